@@ -0,0 +1,196 @@
+package com.faunadb.common.http;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JDK and OpenSSL TLS providers used by {@link HttpClient}.
+ *
+ * <p>Client and server engines exchange records through in-memory buffers, so the numbers only
+ * reflect the cost of the TLS implementation. The client context is built exactly as
+ * {@link HttpClient} builds it.</p>
+ *
+ * <p>Run with: <code>sbt "bench/jmh:run TlsProviderBenchmark"</code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlsProviderBenchmark {
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String HOST = "db.fauna.com";
+  private static final int PORT = 443;
+
+  @Param({"JDK", "OPENSSL"})
+  public SslProvider provider;
+
+  @Param({"16384"})
+  public int payloadSize;
+
+  private SelfSignedCertificate certificate;
+  private SslContext serverContext;
+  private SslContext clientContext;
+
+  private SSLEngine client;
+  private SSLEngine server;
+  private ByteBuffer payload;
+  private ByteBuffer network;
+  private ByteBuffer application;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if (HttpClient.sslProvider(provider) != provider) {
+      throw new IllegalStateException(provider + " TLS provider is not available");
+    }
+
+    certificate = new SelfSignedCertificate(HOST);
+    serverContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey())
+      .sslProvider(provider)
+      .build();
+    clientContext = HttpClient.newSslContext(provider, false, -1, -1);
+
+    client = clientContext.newEngine(ByteBufAllocator.DEFAULT, HOST, PORT);
+    server = serverContext.newEngine(ByteBufAllocator.DEFAULT);
+    handshake(client, server);
+
+    byte[] bytes = new byte[payloadSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    payload = ByteBuffer.wrap(bytes);
+    network = ByteBuffer.allocateDirect(BUFFER_SIZE * 2);
+    application = ByteBuffer.allocateDirect(BUFFER_SIZE * 2);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ReferenceCountUtil.release(client);
+    ReferenceCountUtil.release(server);
+    certificate.delete();
+  }
+
+  /**
+   * A full handshake, as paid by every new connection without a resumable session.
+   */
+  @Benchmark
+  public SSLEngine fullHandshake() throws SSLException {
+    int port = ThreadLocalRandom.current().nextInt(1, 65536);
+    return handshake(clientContext.newEngine(ByteBufAllocator.DEFAULT, HOST, port));
+  }
+
+  /**
+   * A handshake to the same peer as previous connections, resuming the cached session when the
+   * provider supports it.
+   */
+  @Benchmark
+  public SSLEngine resumedHandshake() throws SSLException {
+    return handshake(clientContext.newEngine(ByteBufAllocator.DEFAULT, HOST, PORT));
+  }
+
+  /**
+   * Encrypts a payload on the client and decrypts it on the server.
+   */
+  @Benchmark
+  public int roundTrip() throws SSLException {
+    payload.clear();
+    network.clear();
+    application.clear();
+
+    while (payload.hasRemaining()) {
+      client.wrap(payload, network);
+    }
+
+    network.flip();
+    while (network.hasRemaining()) {
+      server.unwrap(network, application);
+    }
+
+    return application.position();
+  }
+
+  private SSLEngine handshake(SSLEngine engine) throws SSLException {
+    SSLEngine peer = serverContext.newEngine(ByteBufAllocator.DEFAULT);
+
+    try {
+      handshake(engine, peer);
+      return engine;
+    } finally {
+      ReferenceCountUtil.release(engine);
+      ReferenceCountUtil.release(peer);
+    }
+  }
+
+  private static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+    ByteBuffer clientOut = ByteBuffer.allocate(BUFFER_SIZE);
+    ByteBuffer serverOut = ByteBuffer.allocate(BUFFER_SIZE);
+    ByteBuffer clientApp = ByteBuffer.allocate(BUFFER_SIZE);
+    ByteBuffer serverApp = ByteBuffer.allocate(BUFFER_SIZE);
+
+    client.setUseClientMode(true);
+    server.setUseClientMode(false);
+    client.beginHandshake();
+    server.beginHandshake();
+
+    for (int i = 0; i < 100; i++) {
+      step(client, clientOut, serverOut, clientApp);
+      step(server, serverOut, clientOut, serverApp);
+
+      if (isDone(client) && isDone(server) && clientOut.position() == 0 && serverOut.position() == 0) {
+        return;
+      }
+    }
+
+    throw new IllegalStateException("Handshake did not complete");
+  }
+
+  private static void step(SSLEngine engine, ByteBuffer out, ByteBuffer in, ByteBuffer app) throws SSLException {
+    engine.wrap(EMPTY, out);
+    runTasks(engine);
+
+    in.flip();
+    while (in.hasRemaining() && engine.unwrap(in, app).bytesConsumed() > 0) {
+      runTasks(engine);
+    }
+    in.compact();
+    app.clear();
+  }
+
+  private static void runTasks(SSLEngine engine) {
+    Runnable task;
+    while ((task = engine.getDelegatedTask()) != null) {
+      task.run();
+    }
+  }
+
+  private static boolean isDone(SSLEngine engine) {
+    HandshakeStatus status = engine.getHandshakeStatus();
+    return status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED;
+  }
+
+}
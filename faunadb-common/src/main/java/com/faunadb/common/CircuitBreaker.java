@@ -0,0 +1,165 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The circuit breaker of an endpoint, see {@link CircuitBreakerPolicy}.
+ *
+ * <p>Requests take a permit before being sent and report their outcome with it. Permits carry the
+ * generation of the breaker, which changes with every transition, so that outcomes of requests sent
+ * before a transition are ignored. Transitions are counted in the {@link MetricRegistry} under
+ * <code>&lt;prefix&gt;-circuit-breaker.&lt;endpoint&gt;.&lt;state&gt;</code>, with a gauge of the current state:
+ * <code>0</code> when closed, <code>1</code> when open and <code>2</code> when half-open, removed once the
+ * connection is closed.</p>
+ */
+final class CircuitBreaker {
+
+  enum State { CLOSED, OPEN, HALF_OPEN }
+
+  /** The permit returned when a request must not be sent. */
+  static final long REJECTED = -1;
+
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  private final CircuitBreakerPolicy policy;
+  private final String endpoint;
+  private final Counter rejected;
+  /** Transition counters, indexed by the ordinal of the state entered. */
+  private final Counter[] transitions;
+
+  private final byte[] window;
+  private int position = 0;
+  private int calls = 0;
+  private int failures = 0;
+  private int slowCalls = 0;
+
+  private volatile State state = State.CLOSED;
+  private volatile long openUntil;
+  private long generation = 0;
+  private int probesStarted = 0;
+
+  CircuitBreaker(CircuitBreakerPolicy policy, Gauges gauges, String prefix, String endpoint) {
+    this.policy = policy;
+    this.endpoint = endpoint;
+    this.window = new byte[policy.windowSize];
+
+    String name = MetricRegistry.name(prefix + "-circuit-breaker", endpoint);
+    this.rejected = gauges.registry().counter(MetricRegistry.name(name, "rejected"));
+    this.transitions = new Counter[State.values().length];
+
+    for (State state : State.values()) {
+      transitions[state.ordinal()] = gauges.registry().counter(MetricRegistry.name(name, state.name().toLowerCase()));
+    }
+
+    gauges.register(MetricRegistry.name(name, "state"), () -> state.ordinal());
+  }
+
+  /**
+   * Whether the breaker would let a request through, without taking a permit.
+   */
+  boolean allowsRequests(long now) {
+    return state != State.OPEN || now - openUntil >= 0;
+  }
+
+  /**
+   * Takes a permit to send a request.
+   *
+   * @return the permit, or {@link #REJECTED} if the request must not be sent
+   */
+  synchronized long tryAcquire() {
+    if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+      transition(State.HALF_OPEN);
+    }
+
+    if (state == State.CLOSED) {
+      return generation;
+    }
+
+    if (state == State.HALF_OPEN && probesStarted < policy.halfOpenProbes) {
+      probesStarted++;
+      return generation;
+    }
+
+    rejected.inc();
+    return REJECTED;
+  }
+
+  /**
+   * Records the outcome of a request sent with a permit.
+   */
+  synchronized void onResult(long permit, long durationNanos, boolean failed) {
+    if (permit != generation) {
+      return;
+    }
+
+    record(failed, durationNanos >= policy.slowCallNanos);
+
+    if (state == State.HALF_OPEN) {
+      if (calls >= policy.halfOpenProbes) {
+        transition(isFailing() ? State.OPEN : State.CLOSED);
+      }
+    } else if (calls >= policy.minimumCalls && isFailing()) {
+      transition(State.OPEN);
+    }
+  }
+
+  /**
+   * Gives back the permit of a request that was cancelled before completing.
+   */
+  synchronized void onCancel(long permit) {
+    if (permit == generation && state == State.HALF_OPEN) {
+      probesStarted--;
+    }
+  }
+
+  State state() {
+    return state;
+  }
+
+  private void record(boolean failed, boolean slow) {
+    if (calls == window.length) {
+      byte oldest = window[position];
+      if ((oldest & FAILED) != 0) failures--;
+      if ((oldest & SLOW) != 0) slowCalls--;
+    } else {
+      calls++;
+    }
+
+    window[position] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+    position = (position + 1) % window.length;
+
+    if (failed) failures++;
+    if (slow) slowCalls++;
+  }
+
+  private boolean isFailing() {
+    return failures >= policy.failureRateThreshold * calls || slowCalls >= policy.slowCallRateThreshold * calls;
+  }
+
+  private void transition(State next) {
+    State previous = state;
+    generation++;
+    probesStarted = 0;
+    position = calls = failures = slowCalls = 0;
+
+    if (next == State.OPEN) {
+      openUntil = System.nanoTime() + policy.openNanos;
+    }
+
+    state = next;
+    transitions[next.ordinal()].inc();
+
+    if (next == State.OPEN) {
+      log.warn("Circuit breaker of endpoint {} opened after being {}", endpoint, previous);
+    } else {
+      log.info("Circuit breaker of endpoint {} is now {}", endpoint, next);
+    }
+  }
+
+}
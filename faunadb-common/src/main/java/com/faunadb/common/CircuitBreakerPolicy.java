@@ -0,0 +1,162 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+
+/**
+ * Describes the circuit breaker a {@link Connection} keeps for each endpoint.
+ *
+ * <p>A closed breaker lets requests through and records their outcome over a sliding window of the
+ * latest requests. When the rate of failed requests, or the rate of slow requests, reaches its
+ * threshold, the breaker opens: requests to the endpoint fail right away with a
+ * {@link CircuitOpenException} instead of piling up. After a while the breaker becomes half-open
+ * and lets a few probe requests through: it closes again if they succeed, or opens again otherwise.</p>
+ *
+ * <p>Failed requests are those failing with a network error, the endpoint not responding in time
+ * included, or with a <code>502</code>, <code>503</code> or <code>504</code> status. Errors raised by
+ * the client itself, such as a request deadline running out or the connection pool being exhausted,
+ * are not recorded.</p>
+ *
+ * <p>Connections do not use circuit breakers unless a policy is set.</p>
+ */
+public final class CircuitBreakerPolicy {
+
+  /**
+   * Opens when half of the last 100 requests failed, or when all of them took 10s or more, with at
+   * least 20 requests observed. Stays open for 10s, then probes with 5 requests.
+   */
+  public static final CircuitBreakerPolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link CircuitBreakerPolicy} instance. Use the {@link CircuitBreakerPolicy#builder}
+   * method to create an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private double failureRateThreshold = 0.5;
+    private Duration slowCallDuration = Duration.ofSeconds(10);
+    private double slowCallRateThreshold = 1.0;
+    private int windowSize = 100;
+    private int minimumCalls = 20;
+    private Duration openDuration = Duration.ofSeconds(10);
+    private int halfOpenProbes = 5;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the rate of failed requests opening the breaker.
+     *
+     * @param threshold the rate, between <code>0</code> exclusive and <code>1</code>. Defaults to <code>0.5</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withFailureRateThreshold(double threshold) {
+      checkRate(threshold);
+      this.failureRateThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Sets which requests are slow, and the rate of slow requests opening the breaker.
+     *
+     * @param duration the duration from which a request is slow. Defaults to 10s
+     * @param threshold the rate, between <code>0</code> exclusive and <code>1</code>. Defaults to <code>1</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withSlowCalls(Duration duration, double threshold) {
+      checkRate(threshold);
+      this.slowCallDuration = duration;
+      this.slowCallRateThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Sets the number of latest requests the rates are computed over.
+     *
+     * @param size the number of requests in the window. Defaults to <code>100</code>
+     * @param minimumCalls the number of requests to observe before the rates are trusted, at most
+     *                     <code>size</code>. Defaults to <code>20</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withWindow(int size, int minimumCalls) {
+      if (size < 1 || minimumCalls < 1 || minimumCalls > size) {
+        throw new IllegalArgumentException("size and minimumCalls must be positive, and minimumCalls at most size");
+      }
+
+      this.windowSize = size;
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /**
+     * Sets how long the breaker stays open before probing the endpoint again.
+     *
+     * @param duration the open duration. Defaults to 10s
+     * @return this {@link Builder} object
+     */
+    public Builder withOpenDuration(Duration duration) {
+      if (duration.isNegative()) {
+        throw new IllegalArgumentException("duration must not be negative");
+      }
+
+      this.openDuration = duration;
+      return this;
+    }
+
+    /**
+     * Sets the number of probe requests let through by a half-open breaker.
+     *
+     * @param probes the number of probes, at least <code>1</code>. Defaults to <code>5</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withHalfOpenProbes(int probes) {
+      if (probes < 1) {
+        throw new IllegalArgumentException("probes must be at least 1");
+      }
+
+      this.halfOpenProbes = probes;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link CircuitBreakerPolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public CircuitBreakerPolicy build() {
+      return new CircuitBreakerPolicy(this);
+    }
+
+    private static void checkRate(double rate) {
+      if (rate <= 0 || rate > 1) {
+        throw new IllegalArgumentException("Rates must be greater than 0 and at most 1");
+      }
+    }
+  }
+
+  final double failureRateThreshold;
+  final long slowCallNanos;
+  final double slowCallRateThreshold;
+  final int windowSize;
+  final int minimumCalls;
+  final long openNanos;
+  final int halfOpenProbes;
+
+  private CircuitBreakerPolicy(Builder builder) {
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallNanos = builder.slowCallDuration.toNanos();
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.windowSize = builder.windowSize;
+    this.minimumCalls = builder.minimumCalls;
+    this.openNanos = builder.openDuration.toNanos();
+    this.halfOpenProbes = builder.halfOpenProbes;
+  }
+
+}
@@ -0,0 +1,18 @@
+package com.faunadb.common;
+
+import java.net.ConnectException;
+
+/**
+ * Thrown when a request is not sent because the circuit breaker of its endpoint is open.
+ *
+ * @see CircuitBreakerPolicy
+ */
+public class CircuitOpenException extends ConnectException {
+
+  private static final long serialVersionUID = 1L;
+
+  public CircuitOpenException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,18 @@
+package com.faunadb.common;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a request is not sent because the connection has too many outstanding requests.
+ *
+ * @see ConcurrencyLimitPolicy
+ */
+public class ConcurrencyLimitException extends RejectedExecutionException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ConcurrencyLimitException(String message) {
+    super(message);
+  }
+
+}
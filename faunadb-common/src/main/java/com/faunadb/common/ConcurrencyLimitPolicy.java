@@ -0,0 +1,122 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+
+/**
+ * Describes how a {@link Connection} limits its outstanding requests.
+ *
+ * <p>The limit adapts to the measured round-trip time: it grows while requests take about as long as
+ * they usually do, and shrinks once they take longer, as they start queueing on the server side. Requests
+ * failing with a network error or a <code>502</code>, <code>503</code> or <code>504</code> status, and rate
+ * limited requests, shrink the limit as well, while errors raised by the client itself, such as a deadline
+ * running out, are ignored. This keeps the load close to what FaunaDB can serve without latency growing.</p>
+ *
+ * <p>Requests beyond the limit wait in a bounded queue, for a bounded time. Requests that cannot be
+ * queued, or that waited too long, fail with a {@link ConcurrencyLimitException}.</p>
+ */
+public final class ConcurrencyLimitPolicy {
+
+  /**
+   * Starts with a limit of 20 requests, adapted between 1 and 1000, and queues up to 1000 requests
+   * for at most 1s.
+   */
+  public static final ConcurrencyLimitPolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link ConcurrencyLimitPolicy} instance. Use the {@link ConcurrencyLimitPolicy#builder}
+   * method to create an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private int maxQueued = 1000;
+    private Duration maxWait = Duration.ofSeconds(1);
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the limit used until round-trip times are measured.
+     *
+     * @param limit the initial limit. Defaults to <code>20</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withInitialLimit(int limit) {
+      if (limit < 1) {
+        throw new IllegalArgumentException("limit must be at least 1");
+      }
+
+      this.initialLimit = limit;
+      return this;
+    }
+
+    /**
+     * Sets the bounds of the limit.
+     *
+     * @param min the lowest limit, at least <code>1</code>. Defaults to <code>1</code>
+     * @param max the highest limit. Defaults to <code>1000</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withLimitRange(int min, int max) {
+      if (min < 1 || max < min) {
+        throw new IllegalArgumentException("min must be at least 1, and max at least min");
+      }
+
+      this.minLimit = min;
+      this.maxLimit = max;
+      return this;
+    }
+
+    /**
+     * Sets the queue of requests waiting for the limit.
+     *
+     * @param maxQueued the maximum number of waiting requests, <code>0</code> to reject requests right
+     *                  away. Defaults to <code>1000</code>
+     * @param maxWait the maximum time a request waits. Defaults to 1s
+     * @return this {@link Builder} object
+     */
+    public Builder withQueue(int maxQueued, Duration maxWait) {
+      if (maxQueued < 0 || maxWait.isNegative()) {
+        throw new IllegalArgumentException("maxQueued and maxWait must not be negative");
+      }
+
+      this.maxQueued = maxQueued;
+      this.maxWait = maxWait;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link ConcurrencyLimitPolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public ConcurrencyLimitPolicy build() {
+      return new ConcurrencyLimitPolicy(this);
+    }
+  }
+
+  final int initialLimit;
+  final int minLimit;
+  final int maxLimit;
+  final int maxQueued;
+  final long maxWaitNanos;
+
+  private ConcurrencyLimitPolicy(Builder builder) {
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.initialLimit = Math.max(minLimit, Math.min(builder.initialLimit, maxLimit));
+    this.maxQueued = builder.maxQueued;
+    this.maxWaitNanos = builder.maxWait.toNanos();
+  }
+
+}
@@ -0,0 +1,185 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Counter;
+import com.faunadb.common.http.SharedTimer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the outstanding requests of a connection and its sessions, see {@link ConcurrencyLimitPolicy}.
+ *
+ * <p>The limit follows a gradient, and is adjusted once per window of samples, about one round trip
+ * long. The average round-trip time of the window is compared to a baseline, the lowest window average
+ * seen, slowly drifting up so that it follows lasting changes. While the window average stays within a
+ * tolerance of the baseline, the limit grows by the square root of itself. Once requests start
+ * queueing, the window average rises and the limit shrinks in proportion, by at most a half. Changes are
+ * smoothed over several windows. A window with requests failing in a way that suggests an overload
+ * shrinks the limit as well. The limit is only adjusted while requests use at least half of it.</p>
+ */
+final class ConcurrencyLimiter {
+
+  private static final double BACKOFF_RATIO = 0.9;
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double BASELINE_DECAY = 0.001;
+  private static final int MIN_WINDOW = 10;
+
+  private final ConcurrencyLimitPolicy policy;
+  private final Counter rejected;
+  private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+
+  private volatile double limit;
+  private volatile int inFlight = 0;
+  private double baselineRtt = 0;
+  private long windowRtt = 0;
+  private int windowSamples = 0;
+  private boolean windowDropped = false;
+
+  ConcurrencyLimiter(ConcurrencyLimitPolicy policy, Gauges gauges, String prefix) {
+    this.policy = policy;
+    this.rejected = gauges.registry().counter(prefix + "-concurrency-rejected");
+    this.limit = policy.initialLimit;
+
+    gauges.register(prefix + "-concurrency-limit", () -> (int) limit);
+    gauges.register(prefix + "-concurrency-in-flight", () -> inFlight);
+    gauges.register(prefix + "-concurrency-queued", this::queued);
+  }
+
+  /**
+   * Waits for the limit to let a request through. Each successful acquisition must be followed by a
+   * {@link #release()}.
+   *
+   * @param maxWaitNanos the time left before the deadline of the request, which bounds the wait as well
+   * @return a future completed once the request can be sent, or failed with a {@link ConcurrencyLimitException}
+   */
+  CompletableFuture<Void> acquire(long maxWaitNanos) {
+    CompletableFuture<Void> waiter = new CompletableFuture<>();
+
+    synchronized (this) {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        waiter.complete(null);
+        return waiter;
+      }
+
+      if (queue.size() >= policy.maxQueued) {
+        rejected.inc();
+        waiter.completeExceptionally(new ConcurrencyLimitException(
+          "Too many outstanding requests: " + inFlight + " in flight, " + queue.size() + " queued"));
+        return waiter;
+      }
+
+      queue.addLast(waiter);
+    }
+
+    long wait = Math.min(maxWaitNanos, policy.maxWaitNanos);
+    SharedTimer.get().newTimeout(t -> {
+      boolean expired;
+
+      synchronized (this) {
+        expired = queue.remove(waiter);
+      }
+
+      if (expired) {
+        rejected.inc();
+        waiter.completeExceptionally(new ConcurrencyLimitException(
+          "Timed out after " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms waiting for the concurrency limit"));
+      }
+    }, Math.max(wait, 0), TimeUnit.NANOSECONDS);
+
+    return waiter;
+  }
+
+  /**
+   * Ends a request let through by {@link #acquire(long)}.
+   */
+  void release() {
+    List<CompletableFuture<Void>> granted;
+
+    synchronized (this) {
+      inFlight--;
+      granted = drain();
+    }
+
+    grant(granted);
+  }
+
+  /**
+   * Adjusts the limit from the round-trip time of a request.
+   *
+   * @param rttNanos the round-trip time in nanoseconds
+   * @param dropped whether the request failed in a way that suggests an overload
+   */
+  void onSample(long rttNanos, boolean dropped) {
+    if (rttNanos <= 0) {
+      return;
+    }
+
+    List<CompletableFuture<Void>> granted;
+
+    synchronized (this) {
+      windowRtt += rttNanos;
+      windowDropped |= dropped;
+
+      if (++windowSamples < Math.max(MIN_WINDOW, inFlight)) {
+        return;
+      }
+
+      double rtt = (double) windowRtt / windowSamples;
+      boolean overloaded = windowDropped;
+      windowRtt = 0;
+      windowSamples = 0;
+      windowDropped = false;
+
+      // The baseline follows lower round-trip times right away, and higher ones slowly
+      baselineRtt = baselineRtt == 0 || rtt < baselineRtt ? rtt : baselineRtt + BASELINE_DECAY * (rtt - baselineRtt);
+
+      double current = limit;
+      double next;
+
+      if (overloaded) {
+        next = current * BACKOFF_RATIO;
+      } else if (inFlight * 2 < current) {
+        return;
+      } else {
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineRtt / rtt));
+        next = current + SMOOTHING * (current * gradient + Math.sqrt(current) - current);
+      }
+
+      limit = Math.max(policy.minLimit, Math.min(next, policy.maxLimit));
+      granted = drain();
+    }
+
+    grant(granted);
+  }
+
+  private synchronized int queued() {
+    return queue.size();
+  }
+
+  private List<CompletableFuture<Void>> drain() {
+    if (queue.isEmpty() || inFlight >= (int) limit) {
+      return Collections.emptyList();
+    }
+
+    List<CompletableFuture<Void>> granted = new ArrayList<>();
+    while (inFlight < (int) limit && !queue.isEmpty()) {
+      inFlight++;
+      granted.add(queue.pollFirst());
+    }
+
+    return granted;
+  }
+
+  private void grant(List<CompletableFuture<Void>> granted) {
+    for (CompletableFuture<Void> waiter : granted) {
+      waiter.complete(null);
+    }
+  }
+
+}
@@ -5,28 +5,46 @@ import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.faunadb.common.http.HttpClient;
+import com.faunadb.common.http.HttpExchangeListener;
+import com.faunadb.common.http.HttpJsonResponse;
+import com.faunadb.common.http.HttpTransport;
+import com.faunadb.common.http.SharedTimer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
 import io.netty.handler.codec.base64.Base64;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.AsciiString;
 import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOError;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static io.netty.util.CharsetUtil.US_ASCII;
-import static io.netty.util.CharsetUtil.UTF_8;
-import static java.lang.String.format;
 
 /**
  * The HTTP Connection adapter for FaunaDB drivers.
@@ -39,11 +57,21 @@ import static java.lang.String.format;
  */
 public final class Connection implements AutoCloseable {
 
-  private static final String API_VERSION = "2.7";
+  private static final AsciiString API_VERSION = AsciiString.cached("2.7");
   private static final int DEFAULT_CONNECTION_TIMEOUT_MS = 10000;
   private static final int DEFAULT_REQUEST_TIMEOUT_MS = 60000;
+  private static final int DEFAULT_HEALTH_CHECK_INTERVAL_MS = 10000;
+  private static final String DEFAULT_METRICS_PREFIX = "fauna";
   private static final URL FAUNA_ROOT;
 
+  /**
+   * Completes futures on the thread their response arrived on, usually an I/O thread, without any
+   * handoff. Callbacks attached to the futures must not block.
+   *
+   * @see Builder#withCompletionExecutor(Executor)
+   */
+  public static final Executor DIRECT_EXECUTOR = Runnable::run;
+
   static {
     try {
       FAUNA_ROOT = new URL("https://db.fauna.com");
@@ -57,9 +85,11 @@ public final class Connection implements AutoCloseable {
     SCALA("Scala");
 
     private String stringValue;
+    private final AsciiString header;
 
     JvmDriver(String stringValue) {
       this.stringValue = stringValue;
+      this.header = AsciiString.cached(stringValue);
     }
 
     @Override public String toString() {
@@ -82,12 +112,28 @@ public final class Connection implements AutoCloseable {
    */
   public static class Builder {
 
-    private URL faunaRoot;
+    private List<URL> faunaRoots;
     private String authToken;
     private MetricRegistry metricRegistry;
+    private String metricsPrefix = DEFAULT_METRICS_PREFIX;
     private long lastSeenTxn;
     private HttpClient client;
     private JvmDriver jvmDriver;
+    private HttpClient.Protocol protocol = HttpClient.Protocol.HTTP_1_1;
+    private int warmUpConnections = 0;
+    private int minIdleConnections = 0;
+    private boolean compression = false;
+    private int pipeliningDepth = 1;
+    private EventLoopGroup eventLoopGroup;
+    private int ioThreads = 0;
+    private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL_MS;
+    private RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private HedgePolicy hedgePolicy;
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    private ConcurrencyLimitPolicy concurrencyLimitPolicy;
+    private Executor completionExecutor = ForkJoinPool.commonPool();
+    private RequestListener requestListener;
+    private RequestLogPolicy requestLogPolicy = RequestLogPolicy.DEFAULT;
 
     private Builder() {
     }
@@ -100,8 +146,7 @@ public final class Connection implements AutoCloseable {
      * @throws MalformedURLException if a malformed url is provided
      */
     public Builder withFaunaRoot(String root) throws MalformedURLException {
-      this.faunaRoot = new URL(root);
-      return this;
+      return withFaunaRoot(new URL(root));
     }
 
     /**
@@ -111,7 +156,134 @@ public final class Connection implements AutoCloseable {
      * @return this {@link Builder} object
      */
     public Builder withFaunaRoot(URL root) {
-      this.faunaRoot = root;
+      this.faunaRoots = Collections.singletonList(root);
+      return this;
+    }
+
+    /**
+     * Sets several FaunaDB root URLs for the {@link Connection} instance, for instance the nodes of a
+     * cluster or several regions. Each query goes to the less loaded of two endpoints picked at random,
+     * considering their outstanding queries and recent latency. Endpoints that keep failing, or that fail
+     * their periodic <code>/ping</code> health check, stop receiving queries until they recover.
+     * Replaces any root set with {@link #withFaunaRoot(URL)}.
+     *
+     * @param roots the root URLs
+     * @return this {@link Builder} object
+     */
+    public Builder withFaunaRoots(List<URL> roots) {
+      if (roots.isEmpty()) {
+        throw new IllegalArgumentException("Invalid endpoints: no endpoint provided");
+      }
+
+      this.faunaRoots = new ArrayList<>(roots);
+      return this;
+    }
+
+    /**
+     * Sets how often each endpoint set with {@link #withFaunaRoots(List)} is checked with a
+     * <code>/ping</code> request. Ignored with a single endpoint. Defaults to 10 seconds.
+     *
+     * @param healthCheckInterval interval in milliseconds, <code>-1</code> to disable health checks
+     * @return this {@link Builder} object
+     */
+    public Builder withHealthCheckInterval(int healthCheckInterval) {
+      this.healthCheckInterval = healthCheckInterval;
+      return this;
+    }
+
+    /**
+     * Enables retries of failed requests. Disabled by default.
+     *
+     * @param retryPolicy the {@link RetryPolicy} to use, for instance {@link RetryPolicy#DEFAULT}, or
+     *                    <code>null</code> or {@link RetryPolicy#NONE} to disable retries
+     * @return this {@link Builder} object
+     */
+    public Builder withRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+      return this;
+    }
+
+    /**
+     * Enables hedging: requests without side effects that are slower than most are sent a second time,
+     * and the first response is used. Disabled by default.
+     *
+     * @param hedgePolicy the {@link HedgePolicy} to use, <code>null</code> to disable hedging
+     * @return this {@link Builder} object
+     */
+    public Builder withHedgePolicy(HedgePolicy hedgePolicy) {
+      this.hedgePolicy = hedgePolicy;
+      return this;
+    }
+
+    /**
+     * Enables a circuit breaker for each endpoint, which fails requests right away while the endpoint
+     * is failing. Disabled by default.
+     *
+     * @param circuitBreakerPolicy the {@link CircuitBreakerPolicy} to use, for instance {@link CircuitBreakerPolicy#DEFAULT},
+     *                             <code>null</code> to disable circuit breakers
+     * @return this {@link Builder} object
+     */
+    public Builder withCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+      this.circuitBreakerPolicy = circuitBreakerPolicy;
+      return this;
+    }
+
+    /**
+     * Enables an adaptive limit on the outstanding requests of the connection and its sessions. Requests
+     * beyond the limit wait in a bounded queue, or fail with a {@link ConcurrencyLimitException}. Disabled
+     * by default.
+     *
+     * @param concurrencyLimitPolicy the {@link ConcurrencyLimitPolicy} to use, <code>null</code> to disable the limit
+     * @return this {@link Builder} object
+     */
+    public Builder withConcurrencyLimitPolicy(ConcurrencyLimitPolicy concurrencyLimitPolicy) {
+      this.concurrencyLimitPolicy = concurrencyLimitPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the executor completing the futures returned by the connection, which runs the callbacks
+     * attached to them. Defaults to {@link ForkJoinPool#commonPool()}.
+     *
+     * @param completionExecutor the {@link Executor} to use, {@link Connection#DIRECT_EXECUTOR} to complete
+     *                           futures without a thread handoff
+     * @return this {@link Builder} object
+     */
+    public Builder withCompletionExecutor(Executor completionExecutor) {
+      if (completionExecutor == null) {
+        throw new IllegalArgumentException("completionExecutor must not be null");
+      }
+
+      this.completionExecutor = completionExecutor;
+      return this;
+    }
+
+    /**
+     * Sets a listener notified of the lifecycle of every request sent by the connection and its sessions:
+     * start, connection acquired, request written, first response byte, response complete, response
+     * parsed, and failure. Disabled by default.
+     *
+     * @param requestListener the {@link RequestListener} to notify, <code>null</code> to disable it
+     * @return this {@link Builder} object
+     */
+    public Builder withRequestListener(RequestListener requestListener) {
+      this.requestListener = requestListener;
+      return this;
+    }
+
+    /**
+     * Sets how requests are logged: which fraction is logged, how much of their bodies, and how often
+     * errors are summed up per endpoint. Defaults to {@link RequestLogPolicy#DEFAULT}.
+     *
+     * @param requestLogPolicy the {@link RequestLogPolicy} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withRequestLogPolicy(RequestLogPolicy requestLogPolicy) {
+      if (requestLogPolicy == null) {
+        throw new IllegalArgumentException("requestLogPolicy must not be null");
+      }
+
+      this.requestLogPolicy = requestLogPolicy;
       return this;
     }
 
@@ -134,7 +306,36 @@ public final class Connection implements AutoCloseable {
      * @return this {@link Builder} object
      */
     public Builder withMetrics(MetricRegistry registry) {
+      return withMetrics(registry, DEFAULT_METRICS_PREFIX);
+    }
+
+    /**
+     * Sets a {@link MetricRegistry} for the {@link Connection} instance, naming its metrics with the
+     * given prefix instead of <code>fauna</code>. Besides the transport level statistics described in
+     * {@link HttpClient.Builder#withMetrics(MetricRegistry, String)}, the connection tracks:
+     * <ul>
+     *   <li>a <code>&lt;prefix&gt;-request</code> timer of the requests sent;</li>
+     *   <li><code>&lt;prefix&gt;-response-status.&lt;code&gt;</code> counters of the responses received
+     *   by status code;</li>
+     *   <li><code>&lt;prefix&gt;-request-errors.&lt;exception&gt;</code> counters of the requests failed
+     *   by exception class;</li>
+     *   <li><code>&lt;prefix&gt;-query-compute-ops</code>, <code>-query-byte-read-ops</code>,
+     *   <code>-query-byte-write-ops</code>, <code>-query-time</code>, <code>-query-storage-bytes-read</code>,
+     *   <code>-query-storage-bytes-write</code> and <code>-query-txn-retries</code> histograms of the
+     *   costs reported by FaunaDB, see {@link QueryStats};</li>
+     *   <li><code>&lt;prefix&gt;-request-retries</code> and <code>&lt;prefix&gt;-request-hedges</code>
+     *   counters, see {@link RetryPolicy} and {@link HedgePolicy};</li>
+     *   <li>the circuit breaker and concurrency limit metrics, see {@link CircuitBreakerPolicy} and
+     *   {@link ConcurrencyLimitPolicy}.</li>
+     * </ul>
+     *
+     * @param registry the {@link MetricRegistry} instance.
+     * @param prefix the prefix of the metric names
+     * @return this {@link Builder} object
+     */
+    public Builder withMetrics(MetricRegistry registry, String prefix) {
       this.metricRegistry = registry;
+      this.metricsPrefix = prefix;
       return this;
     }
 
@@ -149,6 +350,96 @@ public final class Connection implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the HTTP protocol version used by the connection. With {@link HttpClient.Protocol#HTTP_2}
+     * concurrent queries share a few connections as multiplexed streams. Ignored when an
+     * {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     *
+     * @param protocol the {@link HttpClient.Protocol} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withProtocol(HttpClient.Protocol protocol) {
+      this.protocol = protocol;
+      return this;
+    }
+
+    /**
+     * Sets the number of connections opened and handshaken in the background when the connection is
+     * built. Use {@link Connection#warmedUp()} to wait for them. Ignored when an {@link HttpClient} is
+     * provided through {@link #withHttpClient(HttpClient)}.
+     *
+     * @param connections the number of connections to open at startup
+     * @return this {@link Builder} object
+     */
+    public Builder withWarmUpConnections(int connections) {
+      this.warmUpConnections = connections;
+      return this;
+    }
+
+    /**
+     * Sets the number of idle connections kept open, reopening them in the background when they close.
+     * Ignored when an {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     *
+     * @param connections the minimum number of idle connections
+     * @return this {@link Builder} object
+     */
+    public Builder withMinIdleConnections(int connections) {
+      this.minIdleConnections = connections;
+      return this;
+    }
+
+    /**
+     * Enables gzip compression of large request bodies and of responses. Ignored when an
+     * {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     *
+     * @param compression whether to compress requests and accept compressed responses
+     * @return this {@link Builder} object
+     */
+    public Builder withCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets how many queries a single HTTP/1.1 connection may carry at once once every connection is
+     * busy. Ignored when an {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     * Defaults to 1, no pipelining.
+     *
+     * @param pipeliningDepth the maximum number of in flight queries per connection
+     * @return this {@link Builder} object
+     */
+    public Builder withPipeliningDepth(int pipeliningDepth) {
+      this.pipeliningDepth = pipeliningDepth;
+      return this;
+    }
+
+    /**
+     * Sets the event loop group performing the connection I/O, for instance
+     * {@link com.faunadb.common.http.SharedEventLoopGroup#get()}, so that several connections share the
+     * same threads. The group is not shut down when the connection is closed. Ignored when an
+     * {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     *
+     * @param eventLoopGroup the {@link EventLoopGroup} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withEventLoopGroup(EventLoopGroup eventLoopGroup) {
+      this.eventLoopGroup = eventLoopGroup;
+      return this;
+    }
+
+    /**
+     * Sets the number of I/O threads started for the connection when no event loop group is provided.
+     * Ignored when an {@link HttpClient} is provided through {@link #withHttpClient(HttpClient)}.
+     * Defaults to twice the number of available processors.
+     *
+     * @param ioThreads the number of I/O threads, <code>0</code> for the default
+     * @return this {@link Builder} object
+     */
+    public Builder withIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+      return this;
+    }
+
     /**
      * Sets the last seen transaction time for the connection.
      *
@@ -179,53 +470,129 @@ public final class Connection implements AutoCloseable {
      * the settings of the {@link Builder} instance.
      */
     public Connection build() {
+      if (metricsPrefix == null || metricsPrefix.isEmpty()) {
+        throw new IllegalArgumentException("Invalid metrics prefix: no prefix provided");
+      }
+
       MetricRegistry registry;
       if (metricRegistry == null)
         registry = new MetricRegistry();
       else
         registry = metricRegistry;
 
-      URL root;
-      if (faunaRoot == null) {
-        root = FAUNA_ROOT;
+      List<URL> roots = faunaRoots == null ? Collections.singletonList(FAUNA_ROOT) : faunaRoots;
+      Gauges gauges = new Gauges(registry);
+      Hedging hedging = hedgePolicy == null ? null : newHedging(hedgePolicy, gauges);
+      ConcurrencyLimiter limiter = concurrencyLimitPolicy == null ? null : new ConcurrencyLimiter(concurrencyLimitPolicy, gauges, metricsPrefix);
+      RequestLog requestLog = new RequestLog(requestLogPolicy);
+
+      if (client != null) {
+        if (roots.size() > 1) {
+          throw new IllegalArgumentException("An HttpClient can only be used with a single endpoint");
+        }
+
+        client.retain();
+        LoadBalancer.Endpoint endpoint = new LoadBalancer.Endpoint(roots.get(0), client, newBreaker(roots.get(0), gauges));
+        return new Connection(new LoadBalancer(Collections.singletonList(endpoint), null, null, gauges, -1),
+          authToken, new ConnectionMetrics(registry, metricsPrefix), jvmDriver, lastSeenTxn, retryPolicy, retryPolicy.newBudget(), hedging, limiter,
+          completionExecutor, requestListener, requestLog);
       }
-      else {
-        root = faunaRoot;
+
+      // Endpoints share their I/O threads, which also run the health checks
+      EventLoopGroup group = eventLoopGroup;
+      EventLoopGroup ownedGroup = null;
+      if (group == null && roots.size() > 1) {
+        group = ownedGroup = HttpTransport.best().newEventLoopGroup(ioThreads);
       }
 
-      HttpClient http;
-      if (client == null) {
-        http = new HttpClient(root, DEFAULT_CONNECTION_TIMEOUT_MS, DEFAULT_REQUEST_TIMEOUT_MS);
-      } else {
-        client.retain();
-        http = client;
+      List<LoadBalancer.Endpoint> endpoints = new ArrayList<>(roots.size());
+
+      try {
+        for (URL root : roots) {
+          HttpClient http = HttpClient.builder()
+            .withEndpoint(root)
+            .withConnectionTimeout(DEFAULT_CONNECTION_TIMEOUT_MS)
+            .withRequestTimeout(DEFAULT_REQUEST_TIMEOUT_MS)
+            .withProtocol(protocol)
+            .withWarmUpConnections(warmUpConnections)
+            .withMinIdle(minIdleConnections)
+            .withCompression(compression)
+            .withPipeliningDepth(pipeliningDepth)
+            .withEventLoopGroup(group)
+            .withIoThreads(ioThreads)
+            .withMetrics(registry, metricsPrefix)
+            .build();
+
+          endpoints.add(new LoadBalancer.Endpoint(root, http, newBreaker(root, gauges)));
+        }
+      } catch (RuntimeException e) {
+        for (LoadBalancer.Endpoint endpoint : endpoints) {
+          endpoint.client.close();
+        }
+
+        if (ownedGroup != null) {
+          ownedGroup.shutdownGracefully();
+        }
+
+        gauges.unregister();
+        throw e;
       }
 
-      return new Connection(root, authToken, http, registry, jvmDriver, lastSeenTxn);
+      LoadBalancer balancer = new LoadBalancer(endpoints, group, ownedGroup, gauges, healthCheckInterval);
+      return new Connection(balancer, authToken, new ConnectionMetrics(registry, metricsPrefix), jvmDriver, lastSeenTxn,
+        retryPolicy, retryPolicy.newBudget(), hedging, limiter, completionExecutor, requestListener, requestLog);
+    }
+
+    private CircuitBreaker newBreaker(URL root, Gauges gauges) {
+      return circuitBreakerPolicy == null ? null : new CircuitBreaker(circuitBreakerPolicy, gauges, metricsPrefix, root.toString());
+    }
+
+    private Hedging newHedging(HedgePolicy policy, Gauges gauges) {
+      Hedging hedging = new Hedging(policy, gauges.registry().histogram(metricsPrefix + "-request-hedgeable-latency"));
+      gauges.register(metricsPrefix + "-request-hedge-delay", () -> TimeUnit.NANOSECONDS.toMillis(hedging.delayNanos()));
+      return hedging;
     }
   }
 
-  private static final String X_FAUNADB_HOST = "X-FaunaDB-Host";
-  private static final String X_FAUNADB_BUILD = "X-FaunaDB-Build";
-  private static final String X_FAUNA_DRIVER = "X-Fauna-Driver";
+  private static final AsciiString X_FAUNADB_API_VERSION = AsciiString.cached("X-FaunaDB-API-Version");
+  private static final AsciiString X_FAUNA_DRIVER = AsciiString.cached("X-Fauna-Driver");
+  private static final AsciiString X_QUERY_TIMEOUT = AsciiString.cached("X-Query-Timeout");
+  private static final AsciiString X_LAST_SEEN_TXN = AsciiString.cached("X-Last-Seen-Txn");
+  private static final AsciiString X_TXN_TIME = AsciiString.cached("X-Txn-Time");
+  private static final AsciiString JSON_CONTENT_TYPE = AsciiString.cached("application/json; charset=utf-8");
+  private static final ObjectMapper json = new ObjectMapper();
 
-  private final URL faunaRoot;
-  private final String authHeader;
+  private final LoadBalancer balancer;
+  private final HttpHeaders headers;
   private final JvmDriver jvmDriver;
-  private final HttpClient client;
-  private final MetricRegistry registry;
+  private final ConnectionMetrics metrics;
+  private final RetryPolicy retryPolicy;
+  private final RetryBudget retryBudget;
+  private final Hedging hedging;
+  private final ConcurrencyLimiter limiter;
+  private final Executor completionExecutor;
+  private final RequestListener requestListener;
+  private final RequestLog requestLog;
 
   private final Logger log = LoggerFactory.getLogger(getClass());
-  private final ObjectMapper json = new ObjectMapper();
   private final AtomicBoolean closed = new AtomicBoolean(false);
   private final AtomicLong txnTime = new AtomicLong(0L);
-
-  private Connection(URL faunaRoot, String authToken, HttpClient client, MetricRegistry registry, JvmDriver jvmDriver, long lastSeenTxn) {
-    this.faunaRoot = faunaRoot;
-    this.authHeader = generateAuthHeader(authToken);
-    this.client = client;
-    this.registry = registry;
+  private volatile TxnHeader txnHeader;
+
+  private Connection(LoadBalancer balancer, String authToken, ConnectionMetrics metrics, JvmDriver jvmDriver,
+                     long lastSeenTxn, RetryPolicy retryPolicy, RetryBudget retryBudget, Hedging hedging, ConcurrencyLimiter limiter, Executor completionExecutor, RequestListener requestListener,
+                     RequestLog requestLog) {
+    this.balancer = balancer;
+    this.headers = requestHeaders(authToken, jvmDriver);
+    this.metrics = metrics;
     this.jvmDriver = jvmDriver;
+    this.retryPolicy = retryPolicy;
+    this.retryBudget = retryBudget;
+    this.hedging = hedging;
+    this.limiter = limiter;
+    this.completionExecutor = completionExecutor;
+    this.requestListener = requestListener;
+    this.requestLog = requestLog;
     txnTime.set(lastSeenTxn);
   }
 
@@ -239,8 +606,8 @@ public final class Connection implements AutoCloseable {
    */
   public Connection newSessionConnection(String authToken) {
     try {
-      client.retain();
-      return new Connection(faunaRoot, authToken, client, registry, jvmDriver, getLastTxnTime());
+      balancer.retain();
+      return new Connection(balancer, authToken, metrics, jvmDriver, getLastTxnTime(), retryPolicy, retryBudget, hedging, limiter, completionExecutor, requestListener, requestLog);
     } catch (IllegalReferenceCountException e) {
       throw new IllegalStateException("Can not create a session connection from a closed http connection");
     }
@@ -252,10 +619,20 @@ public final class Connection implements AutoCloseable {
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
-      client.close();
+      balancer.release();
     }
   }
 
+  /**
+   * Returns a future completed once the connections requested through
+   * {@link Builder#withWarmUpConnections(int)} and {@link Builder#withMinIdleConnections(int)} are open.
+   *
+   * @return a {@link CompletableFuture} completed when the connection is warm
+   */
+  public CompletableFuture<Void> warmedUp() {
+    return balancer.warmedUp();
+  }
+
   /**
    * Get the freshest timestamp reported to this client.
    */
@@ -290,7 +667,7 @@ public final class Connection implements AutoCloseable {
    */
   public CompletableFuture<FullHttpResponse> get(String path) throws IOException {
     FullHttpRequest request = newRequest(HttpMethod.GET, path);
-    return performRequest(request);
+    return performRequest(request, true, null, HttpClient::sendRequest);
   }
 
   /**
@@ -304,7 +681,7 @@ public final class Connection implements AutoCloseable {
   public CompletableFuture<FullHttpResponse> get(String path, Map<String, List<String>> params) throws IOException {
     FullHttpRequest request = newRequest(HttpMethod.GET, path);
     fixRequestParameters(request, params);
-    return performRequest(request);
+    return performRequest(request, true, null, HttpClient::sendRequest);
   }
 
   /**
@@ -317,7 +694,41 @@ public final class Connection implements AutoCloseable {
    */
   public CompletableFuture<FullHttpResponse> post(String path, JsonNode body) throws IOException {
     FullHttpRequest request = newRequest(HttpMethod.POST, path, body);
-    return performRequest(request);
+    return performRequest(request, isReadOnlyQuery(path, body), null, HttpClient::sendRequest);
+  }
+
+  /**
+   * Issues a {@code POST} request with the provided JSON request body, parsing the JSON response body
+   * while it is being received. Unlike {@link #post(String, JsonNode)}, the response body is never
+   * buffered as a whole and is not subject to any size limit.
+   *
+   * @param path the relative path of the resource.
+   * @param body the JSON tree that will be serialized into the request body.
+   * @return a {@link CompletableFuture} containing the HTTP response with its parsed body.
+   * @throws IOException if the HTTP request cannot be issued.
+   */
+  public CompletableFuture<HttpJsonResponse> postJson(String path, JsonNode body) throws IOException {
+    FullHttpRequest request = newRequest(HttpMethod.POST, path, body);
+    return performRequest(request, isReadOnlyQuery(path, body), null, HttpClient::sendJsonRequest);
+  }
+
+  /**
+   * Issues a {@code POST} request like {@link #postJson(String, JsonNode)}, which must complete within
+   * the given time. The time left is sent to FaunaDB as the query timeout, so it stops working on the
+   * query too, and the request is aborted on the client side once the time runs out.
+   *
+   * <p>Cancelling the returned future also aborts the request, releasing its connection right away.</p>
+   *
+   * @param path the relative path of the resource.
+   * @param body the JSON tree that will be serialized into the request body.
+   * @param timeout the time allowed for the request.
+   * @return a {@link CompletableFuture} containing the HTTP response with its parsed body, failed with a
+   * {@link java.util.concurrent.TimeoutException} if the time runs out.
+   * @throws IOException if the HTTP request cannot be issued.
+   */
+  public CompletableFuture<HttpJsonResponse> postJson(String path, JsonNode body, Duration timeout) throws IOException {
+    FullHttpRequest request = newRequest(HttpMethod.POST, path, body);
+    return performRequest(request, isReadOnlyQuery(path, body), timeout, HttpClient::sendJsonRequest);
   }
 
   /**
@@ -330,7 +741,7 @@ public final class Connection implements AutoCloseable {
    */
   public CompletableFuture<FullHttpResponse> put(String path, JsonNode body) throws IOException {
     FullHttpRequest request = newRequest(HttpMethod.PUT, path, body);
-    return performRequest(request);
+    return performRequest(request, false, null, HttpClient::sendRequest);
   }
 
   /**
@@ -343,11 +754,12 @@ public final class Connection implements AutoCloseable {
    */
   public CompletableFuture<FullHttpResponse> patch(String path, JsonNode body) throws IOException {
     FullHttpRequest request = newRequest(HttpMethod.PATCH, path, body);
-    return performRequest(request);
+    return performRequest(request, false, null, HttpClient::sendRequest);
   }
 
   private FullHttpRequest newRequest(HttpMethod method, String path) throws IOException {
-    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, mkUrl(path));
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, path, Unpooled.buffer(0),
+      new DefaultHttpHeaders(false).add(headers), new DefaultHttpHeaders(false));
   }
 
   private void fixRequestParameters(FullHttpRequest request, Map<String, List<String>> params) {
@@ -363,83 +775,611 @@ public final class Connection implements AutoCloseable {
   }
 
   private FullHttpRequest newRequest(HttpMethod method, String path, JsonNode body) throws IOException {
-    FullHttpRequest request = newRequest(method, path);
+    ByteBuf content = PooledByteBufAllocator.DEFAULT.directBuffer();
 
-    byte[] jsonBody = json.writeValueAsBytes(body);
-    request.content().clear().writeBytes(jsonBody);
+    try (ByteBufOutputStream out = new ByteBufOutputStream(content)) {
+      json.writeValue((OutputStream) out, body);
+    } catch (IOException | RuntimeException e) {
+      content.release();
+      throw e;
+    }
 
-    request.headers().set(HttpHeaderNames.CONTENT_LENGTH, jsonBody.length);
-    request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8");
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, path, content,
+      new DefaultHttpHeaders(false).add(headers), new DefaultHttpHeaders(false));
+    request.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, JSON_CONTENT_TYPE);
 
     return request;
   }
 
-  private CompletableFuture<FullHttpResponse> performRequest(final FullHttpRequest request) {
-    final Timer.Context ctx = registry.timer("fauna-request").time();
-    final CompletableFuture<FullHttpResponse> rv = new CompletableFuture<>();
+  /**
+   * Whether a request is a query without side effects, which can be sent again safely.
+   */
+  private static boolean isReadOnlyQuery(String path, JsonNode body) {
+    return path.isEmpty() && !QueryEffects.mayWrite(body);
+  }
+
+  /**
+   * Sends a request whose URI is relative to the FaunaDB root, retrying it as the {@link RetryPolicy}
+   * allows and hedging it as the {@link HedgePolicy} allows, each attempt going to the endpoint picked
+   * by the load balancer. When a {@link ConcurrencyLimitPolicy} is set, the request first waits for the
+   * limit, which it holds until the call completes.
+   *
+   * @param idempotent whether the request can be sent twice without applying its effects twice
+   * @param timeout the time allowed for the request, retries included, or <code>null</code>
+   */
+  private <R extends HttpResponse> CompletableFuture<R> performRequest(final FullHttpRequest request,
+                                                                       final boolean idempotent,
+                                                                       final Duration timeout,
+                                                                       final Sender<R> sender) {
+    Call<R> call = new Call<>(request, idempotent, timeout, sender);
+    retryBudget.deposit();
+
+    if (hedging != null && idempotent) {
+      hedging.deposit();
+    }
+
+    if (limiter != null) {
+      CompletableFuture<Void> permit = limiter.acquire(call.remainingNanos());
+
+      if (!permit.isDone() || permit.isCompletedExceptionally()) {
+        permit.whenCompleteAsync((ignored, throwable) -> {
+          if (throwable != null) {
+            call.finish(null, throwable);
+          } else {
+            call.rv.whenComplete((response, error) -> limiter.release());
+            call.retry();
+          }
+        }, completionExecutor);
+
+        return call.rv;
+      }
+
+      call.rv.whenComplete((response, throwable) -> limiter.release());
+    }
+
+    try {
+      call.attempt();
+    } catch (RuntimeException e) {
+      request.release();
+      call.rv.completeExceptionally(e);
+      throw e;
+    }
+
+    return call.rv;
+  }
+
+  /**
+   * Sends a request to a {@link HttpClient}, consuming one reference to it.
+   */
+  @FunctionalInterface
+  private interface Sender<R> {
+    CompletableFuture<R> send(HttpClient client, FullHttpRequest request, Duration timeout, HttpExchangeListener listener,
+                              boolean idempotent);
+  }
+
+  /**
+   * A request and its retries. Each attempt sends a duplicate of the request, and may hedge it with
+   * another duplicate. The request is released once the call completes.
+   */
+  private final class Call<R extends HttpResponse> {
+
+    final CompletableFuture<R> rv = new CompletableFuture<>();
+
+    private final FullHttpRequest request;
+    private final String path;
+    private final boolean idempotent;
+    private final Duration timeout;
+    private final long deadline;
+    private final Sender<R> sender;
+    private final long startTime;
+    private volatile Race current;
+    private int attempts = 0;
+
+    Call(FullHttpRequest request, boolean idempotent, Duration timeout, Sender<R> sender) {
+      this.request = request;
+      this.path = request.uri();
+      this.idempotent = idempotent;
+      this.timeout = timeout;
+      this.deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+      this.sender = sender;
+      this.startTime = System.nanoTime();
+
+      // Let callers abandon the request
+      rv.whenComplete((response, throwable) -> {
+        Race race = current;
+        if (rv.isCancelled() && race != null) race.cancel();
+      });
+    }
+
+    /**
+     * @return the time left before the deadline in nanoseconds, or {@link Long#MAX_VALUE} without a deadline
+     */
+    long remainingNanos() {
+      return timeout == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    void attempt() {
+      attempts++;
+
+      final LoadBalancer.Endpoint endpoint = balancer.select();
+      final Exchange primary;
+
+      try {
+        primary = send(endpoint, false);
+      } catch (MalformedURLException e) {
+        finish(null, e);
+        return;
+      }
+
+      Race race = new Race(primary);
+      current = race;
+
+      if (rv.isCancelled()) {
+        race.cancel();
+      }
+
+      if (hedging != null && idempotent) {
+        long delay = hedging.delayNanos();
+        if (delay >= 0) {
+          SharedTimer.get().newTimeout(t -> hedge(race, endpoint), delay, TimeUnit.NANOSECONDS);
+        }
+      }
+
+      race.winner.thenAcceptAsync(exchange ->
+        exchange.future.whenComplete((response, throwable) -> complete(exchange.req, response, throwable)),
+        completionExecutor);
+    }
+
+    /**
+     * Sends a duplicate of the request to an endpoint.
+     */
+    private Exchange send(LoadBalancer.Endpoint endpoint, boolean hedge) throws MalformedURLException {
+      final Trace trace = requestListener == null ? null
+        : new Trace(new RequestTrace(endpoint.root, request.method().name(), path, attempts, hedge));
+      final FullHttpRequest req = request.retainedDuplicate();
+
+      try {
+        req.setUri(endpoint.uri(path));
+      } catch (MalformedURLException e) {
+        req.release();
+        throw e;
+      }
+
+      long time = getLastTxnTime();
+      if (time > 0) {
+        req.headers().set(X_LAST_SEEN_TXN, txnHeaderValue(time));
+      }
+
+      Duration remaining = null;
+      if (timeout != null) {
+        remaining = Duration.ofNanos(deadline - System.nanoTime());
+        req.headers().set(X_QUERY_TIMEOUT, Long.toString(Math.max(remaining.toMillis(), 1)));
+      }
+
+      final CircuitBreaker breaker = endpoint.breaker;
+      final long permit = breaker == null ? 0 : breaker.tryAcquire();
+
+      if (trace != null) {
+        trace.start();
+      }
+
+      if (permit == CircuitBreaker.REJECTED) {
+        req.release();
+        CircuitOpenException error = new CircuitOpenException("Circuit breaker open for " + endpoint.root);
+        if (trace != null) trace.fail(error);
+        CompletableFuture<R> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(error);
+        return new Exchange(req, rejected);
+      }
+
+      final Timer.Context ctx = metrics.request.time();
+      final long startTime = System.nanoTime();
+      final CompletableFuture<R> future;
+
+      try {
+        future = sender.send(endpoint.client, req, remaining, trace, idempotent);
+      } catch (RuntimeException e) {
+        req.release();
+        if (breaker != null) breaker.onCancel(permit);
+        if (trace != null) trace.fail(e);
+        throw e;
+      }
+
+      endpoint.start();
+
+      future.whenComplete((response, throwable) -> {
+        boolean cancelled = throwable instanceof CancellationException;
+        boolean failed = isEndpointFailure(response, throwable);
+        // Requests cancelled or failed on the client side, say by their deadline, tell nothing about the endpoint
+        boolean ignored = throwable != null && !failed;
+
+        if (!cancelled) {
+          ctx.stop();
+        }
+
+        if (throwable != null && trace != null) {
+          trace.fail(throwable);
+        }
+
+        if (!ignored) {
+          requestLog.record(endpoint, throwable != null ? errorName(throwable) : errorStatus(response));
+        }
+
+        if (ignored) {
+          endpoint.cancel();
+        } else {
+          endpoint.complete(startTime, failed);
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+
+        // Only successful hedgeable requests tell how long a hedge is worth waiting for
+        if (hedging != null && idempotent && throwable == null && response.status().code() < 300) {
+          hedging.record(elapsed);
+        }
+
+        if (breaker != null) {
+          if (ignored) {
+            breaker.onCancel(permit);
+          } else {
+            breaker.onResult(permit, elapsed, failed);
+          }
+        }
+
+        if (limiter != null && !ignored) {
+          limiter.onSample(elapsed, failed || response.status().code() == 429);
+        }
+
+        if (throwable == null) {
+          metrics.status(response.status().code()).inc();
+        } else if (!cancelled) {
+          metrics.error(unwrap(throwable)).inc();
+        }
+
+        if (throwable == null) {
+          recordQueryStats(response.headers());
+
+          String txnTimeHeader = response.headers().get(X_TXN_TIME);
+          if (txnTimeHeader != null) {
+            syncLastTxnTime(Long.parseLong(txnTimeHeader));
+          }
+        }
+      });
+
+      return new Exchange(req, future);
+    }
+
+    private void hedge(Race race, LoadBalancer.Endpoint endpoint) {
+      if (race.isDecided() || rv.isDone()) {
+        return;
+      }
 
-    request.headers().add("Authorization", authHeader);
-    request.headers().set("X-FaunaDB-API-Version", API_VERSION);
+      if (!hedging.tryHedge()) {
+        metrics.hedgesDenied.inc();
+        return;
+      }
 
-    if(jvmDriver != null) {
-      request.headers().set(X_FAUNA_DRIVER, jvmDriver.toString());
+      try {
+        race.add(send(balancer.selectOther(endpoint), true));
+        metrics.hedges.inc();
+      } catch (MalformedURLException | RuntimeException e) {
+        log.debug("Could not hedge request {} {}", request.method(), path, e);
+      }
     }
 
-    long time = getLastTxnTime();
-    if (time > 0) {
-      request.headers().set("X-Last-Seen-Txn", Long.toString(time));
+    private void complete(FullHttpRequest req, R response, Throwable throwable) {
+      long delay = retryDelay(response, throwable);
+      if (delay >= 0) {
+        log.debug("Retrying {} {} in {}ms after attempt {}: {}", req.method(), req.uri(),
+          TimeUnit.NANOSECONDS.toMillis(delay), attempts, throwable != null ? throwable : response.status());
+        ReferenceCountUtil.release(response);
+        metrics.retries.inc();
+        SharedTimer.get().newTimeout(t -> retry(), delay, TimeUnit.NANOSECONDS);
+        return;
+      }
+
+      if (throwable != null) {
+        requestLog.failure(request, req.uri(), attempts, startTime, throwable);
+      } else {
+        requestLog.success(request, req.uri(), attempts, startTime, response);
+      }
+
+      finish(response, throwable);
     }
 
-    request.retain();
+    void retry() {
+      if (rv.isDone()) {
+        finish(null, new CancellationException());
+        return;
+      }
 
-    client.sendRequest(request).whenCompleteAsync((response, throwable) -> {
+      try {
+        attempt();
+      } catch (RuntimeException e) {
+        finish(null, e);
+      }
+    }
 
-      ctx.stop();
+    void finish(R response, Throwable throwable) {
+      request.release();
 
       if (throwable != null) {
-        logFailure(request, throwable);
-        request.release();
         if (response != null)
-          response.release();
+          ReferenceCountUtil.release(response);
         rv.completeExceptionally(throwable);
-        return;
+      } else if (!rv.complete(response)) {
+        ReferenceCountUtil.release(response);
+      }
+    }
+
+    /**
+     * @return the delay before retrying in nanoseconds, or <code>-1</code> if the request must not be retried
+     */
+    private long retryDelay(R response, Throwable throwable) {
+      if (attempts >= retryPolicy.maxAttempts() || rv.isDone() || !isRetryable(response, throwable)) {
+        return -1;
       }
 
-      String txnTimeHeader = response.headers().get("X-Txn-Time");
-      if (txnTimeHeader != null) {
-        syncLastTxnTime(Long.parseLong(txnTimeHeader));
+      long delay = retryPolicy.delayNanos(attempts);
+      if (timeout != null && System.nanoTime() + delay - deadline >= 0) {
+        return -1;
       }
 
-      logSuccess(request, response);
+      if (!retryBudget.tryWithdraw()) {
+        metrics.retriesDenied.inc();
+        return -1;
+      }
 
-      rv.complete(response);
-      request.release();
-    });
+      return delay;
+    }
+
+    private boolean isRetryable(R response, Throwable throwable) {
+      if (throwable == null) {
+        int status = response.status().code();
+        return status == 429 || idempotent && (status == 409 || isUnavailable(response));
+      }
+
+      Throwable cause = unwrap(throwable);
+
+      if (cause instanceof CircuitOpenException) {
+        return balancer.hasAlternatives();
+      }
+
+      return cause instanceof ConnectException ||
+        idempotent && (cause instanceof IOException || cause instanceof TimeoutException);
+    }
 
-    return rv;
+    /**
+     * A duplicate of the request sent to an endpoint.
+     */
+    private final class Exchange {
+
+      final FullHttpRequest req;
+      final CompletableFuture<R> future;
+
+      Exchange(FullHttpRequest req, CompletableFuture<R> future) {
+        this.req = req;
+        this.future = future;
+      }
+    }
+
+    /**
+     * The exchanges of an attempt. The first successful exchange wins and the others are cancelled.
+     * If every exchange fails, the last one to fail wins.
+     */
+    private final class Race {
+
+      final CompletableFuture<Exchange> winner = new CompletableFuture<>();
+
+      private final Exchange primary;
+      private final List<Exchange> running = new ArrayList<>(2);
+      private boolean decided = false;
+
+      Race(Exchange primary) {
+        this.primary = primary;
+        add(primary);
+      }
+
+      synchronized boolean isDecided() {
+        return decided;
+      }
+
+      void add(Exchange exchange) {
+        boolean late;
+
+        synchronized (this) {
+          late = decided;
+          if (!late) running.add(exchange);
+        }
+
+        if (late) {
+          exchange.future.cancel(false);
+        }
+
+        exchange.future.whenComplete((response, throwable) -> finished(exchange, response, throwable));
+      }
+
+      void cancel() {
+        List<Exchange> exchanges;
+
+        synchronized (this) {
+          exchanges = new ArrayList<>(running);
+        }
+
+        for (Exchange exchange : exchanges) {
+          exchange.future.cancel(false);
+        }
+      }
+
+      private void finished(Exchange exchange, R response, Throwable throwable) {
+        boolean succeeded = throwable == null && !isUnavailable(response);
+        List<Exchange> losers;
+
+        synchronized (this) {
+          if (!running.remove(exchange) || decided || !succeeded && !running.isEmpty()) {
+            ReferenceCountUtil.release(response);
+            return;
+          }
+
+          decided = true;
+          losers = new ArrayList<>(running);
+        }
+
+        for (Exchange loser : losers) {
+          loser.future.cancel(false);
+        }
+
+        if (exchange != primary) {
+          metrics.hedgesWon.inc();
+        }
+
+        winner.complete(exchange);
+      }
+    }
   }
 
-  private String mkUrl(String path) throws MalformedURLException {
-    return new URL(faunaRoot, path).toString();
+  /**
+   * Reports the progress of a request to the {@link RequestListener}, shielding the request from
+   * listener failures.
+   */
+  private final class Trace implements HttpExchangeListener {
+
+    private final RequestTrace request;
+
+    Trace(RequestTrace request) {
+      this.request = request;
+    }
+
+    void start() {
+      long now = System.nanoTime();
+      report(() -> requestListener.onRequestStart(request, now));
+    }
+
+    void fail(Throwable cause) {
+      Throwable error = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+      long now = System.nanoTime();
+      report(() -> requestListener.onFailure(request, error, now));
+    }
+
+    @Override
+    public void onChannelAcquired(long nanoTime) {
+      report(() -> requestListener.onChannelAcquired(request, nanoTime));
+    }
+
+    @Override
+    public void onRequestWritten(long bytes, long nanoTime) {
+      report(() -> requestListener.onRequestWritten(request, bytes, nanoTime));
+    }
+
+    @Override
+    public void onFirstByte(long nanoTime) {
+      report(() -> requestListener.onFirstByte(request, nanoTime));
+    }
+
+    @Override
+    public void onResponseComplete(int status, long nanoTime) {
+      report(() -> requestListener.onResponseComplete(request, status, nanoTime));
+    }
+
+    @Override
+    public void onResponseParsed(long nanoTime) {
+      report(() -> requestListener.onParseComplete(request, nanoTime));
+    }
+
+    private void report(Runnable event) {
+      try {
+        event.run();
+      } catch (RuntimeException e) {
+        log.warn("Request listener failed on {}", request, e);
+      }
+    }
+  }
+
+  private void recordQueryStats(HttpHeaders headers) {
+    for (int i = 0; i < metrics.queryStats.length; i++) {
+      long value = QueryStats.parseOrMissing(headers, QueryStats.HEADERS[i]);
+      if (value >= 0) {
+        metrics.queryStats[i].update(value);
+      }
+    }
   }
 
-  private void logSuccess(FullHttpRequest request, FullHttpResponse response) {
-    if (log.isDebugEnabled()) {
-      String data = Optional.ofNullable(request.content().toString(UTF_8)).orElse("");
-      String body = Optional.ofNullable(response.content().toString(UTF_8)).orElse("");
-      String host = response.headers().get(X_FAUNADB_HOST, "Unknown");
-      String build = response.headers().get(X_FAUNADB_BUILD, "Unknown");
+  private static String errorName(Throwable throwable) {
+    return unwrap(throwable).getClass().getSimpleName();
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+  }
 
-      log.debug(
-        format("Request: %s %s: [%s]. Response: Status=%d, Fauna Host: %s, Fauna Build: %s: %s",
-          request.method(), request.uri(), data, response.status().code(), host, build, body));
+  /**
+   * Whether a request failed because of its endpoint: a network error, the endpoint not responding in
+   * time, or a <code>502</code>, <code>503</code> or <code>504</code> response. Errors raised by the
+   * client itself, such as a deadline running out or the connection pool being exhausted, say nothing
+   * about the endpoint.
+   */
+  private static boolean isEndpointFailure(HttpResponse response, Throwable throwable) {
+    if (throwable == null) {
+      return isUnavailable(response);
     }
+
+    Throwable cause = unwrap(throwable);
+    return cause instanceof IOException || cause instanceof ReadTimeoutException;
   }
 
-  private void logFailure(FullHttpRequest request, Throwable ex) {
-    log.info(
-      format("Request: %s %s: %s. Failed: %s",
-        request.method(), request.uri(), request.content().toString(UTF_8), ex.getMessage()), ex);
+  /**
+   * @return the status of a response counted as an error in the logs, or <code>null</code>
+   */
+  private static String errorStatus(HttpResponse response) {
+    int status = response.status().code();
+    return status == 429 || status >= 500 ? Integer.toString(status) : null;
+  }
+
+  private static boolean isUnavailable(HttpResponse response) {
+    int status = response.status().code();
+    return status == 502 || status == 503 || status == 504;
+  }
+
+  /**
+   * The headers shared by every request of the connection. They are never modified after construction,
+   * and are copied into each request.
+   */
+  private static HttpHeaders requestHeaders(String authToken, JvmDriver jvmDriver) {
+    HttpHeaders headers = new DefaultHttpHeaders();
+    headers.set(HttpHeaderNames.AUTHORIZATION, new AsciiString(generateAuthHeader(authToken)));
+    headers.set(X_FAUNADB_API_VERSION, API_VERSION);
+
+    if (jvmDriver != null) {
+      headers.set(X_FAUNA_DRIVER, jvmDriver.header);
+    }
+
+    return headers;
+  }
+
+  /**
+   * The <code>X-Last-Seen-Txn</code> value of a transaction time, reused as long as the time is unchanged.
+   */
+  private AsciiString txnHeaderValue(long time) {
+    TxnHeader header = txnHeader;
+
+    if (header == null || header.time != time) {
+      header = new TxnHeader(time);
+      txnHeader = header;
+    }
+
+    return header.value;
+  }
+
+  private static final class TxnHeader {
+
+    final long time;
+    final AsciiString value;
+
+    TxnHeader(long time) {
+      this.time = time;
+      this.value = new AsciiString(Long.toString(time));
+    }
   }
 
   private static String generateAuthHeader(String authToken) {
@@ -0,0 +1,80 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The request level statistics of a {@link Connection}, shared with its sessions. Metrics are resolved
+ * once, so that requests do not look them up by name: the counters of each response status and error
+ * class are resolved the first time they are used.
+ */
+final class ConnectionMetrics {
+
+  private static final int MAX_STATUS = 600;
+
+  final Timer request;
+  final Counter retries;
+  final Counter retriesDenied;
+  final Counter hedges;
+  final Counter hedgesDenied;
+  final Counter hedgesWon;
+  /** The histograms of the costs reported by FaunaDB, in the order of {@link QueryStats#METRIC_NAMES}. */
+  final Histogram[] queryStats;
+
+  private final MetricRegistry registry;
+  private final String prefix;
+  private final AtomicReferenceArray<Counter> statuses = new AtomicReferenceArray<>(MAX_STATUS);
+  private final ConcurrentMap<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+  ConnectionMetrics(MetricRegistry registry, String prefix) {
+    this.registry = registry;
+    this.prefix = prefix;
+    this.request = registry.timer(prefix + "-request");
+    this.retries = registry.counter(prefix + "-request-retries");
+    this.retriesDenied = registry.counter(prefix + "-request-retries-denied");
+    this.hedges = registry.counter(prefix + "-request-hedges");
+    this.hedgesDenied = registry.counter(prefix + "-request-hedges-denied");
+    this.hedgesWon = registry.counter(prefix + "-request-hedges-won");
+    this.queryStats = new Histogram[QueryStats.METRIC_NAMES.length];
+
+    for (int i = 0; i < queryStats.length; i++) {
+      queryStats[i] = registry.histogram(prefix + "-" + QueryStats.METRIC_NAMES[i]);
+    }
+  }
+
+  /**
+   * @return the <code>&lt;prefix&gt;-response-status.&lt;code&gt;</code> counter of a status
+   */
+  Counter status(int code) {
+    if (code < 0 || code >= MAX_STATUS) {
+      return statusCounter(code);
+    }
+
+    Counter counter = statuses.get(code);
+    if (counter == null) {
+      counter = statusCounter(code);
+      statuses.lazySet(code, counter);
+    }
+
+    return counter;
+  }
+
+  /**
+   * @return the <code>&lt;prefix&gt;-request-errors.&lt;exception&gt;</code> counter of an error
+   */
+  Counter error(Throwable error) {
+    return errors.computeIfAbsent(error.getClass(),
+      cls -> registry.counter(MetricRegistry.name(prefix + "-request-errors", cls.getSimpleName())));
+  }
+
+  private Counter statusCounter(int code) {
+    return registry.counter(MetricRegistry.name(prefix + "-response-status", Integer.toString(code)));
+  }
+
+}
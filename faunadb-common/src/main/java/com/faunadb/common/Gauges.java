@@ -0,0 +1,45 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The gauges registered by a {@link Connection} and its sessions, removed once the connection is closed.
+ *
+ * <p>A gauge is owned by the first connection registering it under its name: another connection
+ * using the same registry and prefix neither replaces nor removes it.</p>
+ */
+final class Gauges {
+
+  private final MetricRegistry registry;
+  private final List<Gauge<?>> owned = new ArrayList<>();
+
+  Gauges(MetricRegistry registry) {
+    this.registry = registry;
+  }
+
+  MetricRegistry registry() {
+    return registry;
+  }
+
+  /**
+   * Registers a gauge, unless another one is already registered under the same name.
+   */
+  synchronized void register(String name, Gauge<?> gauge) {
+    if (registry.gauge(name, () -> gauge) == gauge) {
+      owned.add(gauge);
+    }
+  }
+
+  /**
+   * Removes the gauges registered through {@link #register(String, Gauge)}.
+   */
+  synchronized void unregister() {
+    registry.removeMatching((name, metric) -> owned.stream().anyMatch(gauge -> gauge == metric));
+    owned.clear();
+  }
+
+}
@@ -0,0 +1,119 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+
+/**
+ * Describes how a {@link Connection} hedges requests without side effects: <code>GET</code> requests
+ * and queries that do not write.
+ *
+ * <p>When such a request has not completed after a delay, a duplicate is sent on another connection,
+ * to another endpoint when there are several. The first successful response is used and the other
+ * request is cancelled. The delay adapts to the observed latency: it is a high percentile of the
+ * latency of the successful requests that could be hedged, recorded in the
+ * <code>&lt;prefix&gt;-request-hedgeable-latency</code> histogram, so that only the slowest requests are
+ * hedged. The prefix is set with
+ * {@link Connection.Builder#withMetrics(com.codahale.metrics.MetricRegistry, String)} and defaults to
+ * <code>fauna</code>. The number of hedges is capped by a budget, each request earning a fraction of a
+ * hedge, up to a burst.</p>
+ */
+public final class HedgePolicy {
+
+  /**
+   * Hedges requests slower than 95% of the requests, with a delay of at least 5ms, and a budget of a
+   * hedge every 20 requests on top of a burst of 10 hedges.
+   */
+  public static final HedgePolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link HedgePolicy} instance. Use the {@link HedgePolicy#builder} method to create
+   * an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private double percentile = 0.95;
+    private Duration minDelay = Duration.ofMillis(5);
+    private double budgetRatio = 0.05;
+    private int budgetBurst = 10;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the latency percentile after which requests are hedged.
+     *
+     * @param percentile the percentile, between <code>0</code> and <code>1</code>. Defaults to <code>0.95</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withPercentile(double percentile) {
+      if (percentile <= 0 || percentile >= 1) {
+        throw new IllegalArgumentException("percentile must be between 0 and 1");
+      }
+
+      this.percentile = percentile;
+      return this;
+    }
+
+    /**
+     * Sets the minimum delay before hedging a request, whatever the observed latency.
+     *
+     * @param minDelay the minimum delay. Defaults to 5ms
+     * @return this {@link Builder} object
+     */
+    public Builder withMinDelay(Duration minDelay) {
+      if (minDelay.isNegative()) {
+        throw new IllegalArgumentException("minDelay must not be negative");
+      }
+
+      this.minDelay = minDelay;
+      return this;
+    }
+
+    /**
+     * Sets the hedge budget. Each request adds <code>ratio</code> hedges to the budget, which holds at
+     * most <code>burst</code> hedges and starts full. A request is only hedged if the budget holds a hedge.
+     *
+     * @param ratio the hedges earned by each request, between <code>0</code> and <code>1</code>. Defaults to <code>0.05</code>
+     * @param burst the maximum number of hedges in the budget. Defaults to <code>10</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withBudget(double ratio, int burst) {
+      if (ratio < 0 || ratio > 1 || burst < 0) {
+        throw new IllegalArgumentException("ratio must be between 0 and 1, and burst must not be negative");
+      }
+
+      this.budgetRatio = ratio;
+      this.budgetBurst = burst;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link HedgePolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public HedgePolicy build() {
+      return new HedgePolicy(this);
+    }
+  }
+
+  final double percentile;
+  final long minDelayNanos;
+  final double budgetRatio;
+  final int budgetBurst;
+
+  private HedgePolicy(Builder builder) {
+    this.percentile = builder.percentile;
+    this.minDelayNanos = builder.minDelay.toNanos();
+    this.budgetRatio = builder.budgetRatio;
+    this.budgetBurst = builder.budgetBurst;
+  }
+
+}
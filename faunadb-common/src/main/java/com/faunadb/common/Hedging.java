@@ -0,0 +1,75 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The state of a {@link HedgePolicy}, shared by a connection and its sessions.
+ */
+final class Hedging {
+
+  /** Requests to observe before the latency percentile is trusted. */
+  private static final long MIN_SAMPLES = 100;
+  private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final HedgePolicy policy;
+  private final Histogram latency;
+  private final RetryBudget budget;
+
+  private volatile long delayNanos = -1;
+  private volatile long refreshedAt = System.nanoTime() - REFRESH_NANOS;
+
+  /**
+   * @param latency the latency of successful requests without side effects, in nanoseconds
+   */
+  Hedging(HedgePolicy policy, Histogram latency) {
+    this.policy = policy;
+    this.latency = latency;
+    this.budget = new RetryBudget(policy.budgetRatio, policy.budgetBurst);
+  }
+
+  /**
+   * Records a request that may be hedged.
+   */
+  void deposit() {
+    budget.deposit();
+  }
+
+  /**
+   * Records the latency of a successful request without side effects.
+   */
+  void record(long nanos) {
+    latency.update(nanos);
+  }
+
+  /**
+   * Takes a hedge from the budget.
+   *
+   * @return false if the budget does not hold a hedge
+   */
+  boolean tryHedge() {
+    return budget.tryWithdraw();
+  }
+
+  /**
+   * Returns the delay before hedging a request, from a snapshot of the latency refreshed every second.
+   *
+   * @return the delay in nanoseconds, or <code>-1</code> until enough requests have been observed
+   */
+  long delayNanos() {
+    long now = System.nanoTime();
+
+    if (now - refreshedAt >= REFRESH_NANOS) {
+      refreshedAt = now;
+
+      if (latency.getCount() >= MIN_SAMPLES) {
+        long observed = (long) latency.getSnapshot().getValue(policy.percentile);
+        delayNanos = Math.max(observed, policy.minDelayNanos);
+      }
+    }
+
+    return delayNanos;
+  }
+
+}
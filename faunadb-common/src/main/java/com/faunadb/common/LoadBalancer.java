@@ -0,0 +1,315 @@
+package com.faunadb.common;
+
+import com.faunadb.common.http.HttpClient;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads requests over one {@link HttpClient} per FaunaDB endpoint.
+ *
+ * <p>Each request goes to the cheaper of two endpoints picked at random, the cost of an endpoint being
+ * its latency moving average times its number of outstanding requests. Endpoints failing several
+ * requests in a row are ejected for a time growing with each ejection. Endpoints are also checked
+ * with a <code>/ping</code> request at a fixed interval: a failed check ejects the endpoint and a
+ * successful one brings it back. Endpoints whose circuit breaker is open are avoided as well. When every
+ * endpoint is ejected, requests are spread over all of them.</p>
+ *
+ * <p>Closing the last reference closes every client, the event loop group if it is owned, and removes
+ * the gauges of the connection.</p>
+ */
+final class LoadBalancer extends AbstractReferenceCounted {
+
+  private static final int FAILURE_THRESHOLD = 5;
+  private static final long BASE_EJECTION_MS = 10_000;
+  private static final long MAX_EJECTION_MS = 300_000;
+  private static final double LATENCY_DECAY = 0.3;
+  private static final String PING_PATH = "ping?scope=node";
+
+  private static final Logger log = LoggerFactory.getLogger(LoadBalancer.class);
+
+  /**
+   * A FaunaDB endpoint and the statistics used to balance requests.
+   */
+  static final class Endpoint {
+
+    final URL root;
+    final HttpClient client;
+    /** The circuit breaker of the endpoint, or <code>null</code> if disabled. */
+    final CircuitBreaker breaker;
+
+    private final String rootUri;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile double latency = -1;
+    private volatile long ejectedUntil;
+    private volatile boolean ejected = false;
+    private int ejections = 0;
+
+    Endpoint(URL root, HttpClient client, CircuitBreaker breaker) {
+      this.root = root;
+      this.client = client;
+      this.breaker = breaker;
+
+      try {
+        this.rootUri = new URL(root, "").toString();
+      } catch (MalformedURLException e) {
+        throw new IllegalArgumentException("Invalid endpoint: " + root, e);
+      }
+    }
+
+    /**
+     * Resolves a path against the endpoint root. The root itself, the URI of queries, is resolved once.
+     */
+    String uri(String path) throws MalformedURLException {
+      return path.isEmpty() ? rootUri : new URL(root, path).toString();
+    }
+
+    /**
+     * Records a request sent to the endpoint.
+     */
+    void start() {
+      outstanding.incrementAndGet();
+    }
+
+    /**
+     * Records the end of a request recorded with {@link #start()} that was cancelled, or failed on the
+     * client side, without telling anything about the endpoint.
+     */
+    void cancel() {
+      outstanding.decrementAndGet();
+    }
+
+    /**
+     * Records the end of a request recorded with {@link #start()}.
+     *
+     * @param startTime the request start time, from {@link System#nanoTime()}
+     * @param failed whether the request failed in a way that suggests the endpoint is unhealthy
+     */
+    void complete(long startTime, boolean failed) {
+      outstanding.decrementAndGet();
+
+      if (failed) {
+        if (failures.incrementAndGet() >= FAILURE_THRESHOLD) {
+          eject("failed " + FAILURE_THRESHOLD + " requests in a row");
+        }
+        return;
+      }
+
+      double sample = System.nanoTime() - startTime;
+      double current = latency;
+      latency = current < 0 ? sample : current + LATENCY_DECAY * (sample - current);
+
+      failures.set(0);
+      reinstate();
+    }
+
+    private boolean isAvailable(long now) {
+      return (!ejected || now - ejectedUntil >= 0) && (breaker == null || breaker.allowsRequests(now));
+    }
+
+    private double cost() {
+      return Math.max(latency, 0) * (outstanding.get() + 1);
+    }
+
+    private synchronized void eject(String reason) {
+      if (ejected && System.nanoTime() - ejectedUntil < 0) {
+        return;
+      }
+
+      long duration = Math.min(BASE_EJECTION_MS << Math.min(ejections, 16), MAX_EJECTION_MS);
+      ejections++;
+      failures.set(0);
+      ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+      ejected = true;
+
+      log.warn("Ejecting endpoint {} for {}ms: {}", root, duration, reason);
+    }
+
+    private synchronized void reinstate() {
+      if (ejected) {
+        ejected = false;
+        ejections = 0;
+        log.info("Endpoint {} is back in rotation", root);
+      }
+    }
+  }
+
+  private final Endpoint[] endpoints;
+  private final EventLoopGroup ownedGroup;
+  private final Gauges gauges;
+  private final ScheduledFuture<?> healthCheck;
+  private final CompletableFuture<Void> warmedUp;
+
+  /**
+   * @param endpoints the endpoints to balance requests over, at least one
+   * @param group the event loop group used to schedule health checks, or <code>null</code> to disable them
+   * @param ownedGroup an event loop group shut down with the balancer, or <code>null</code>
+   * @param gauges the gauges of the connection, removed with the balancer
+   * @param healthCheckInterval interval in milliseconds between health checks, <code>-1</code> to disable them
+   */
+  LoadBalancer(List<Endpoint> endpoints, EventLoopGroup group, EventLoopGroup ownedGroup, Gauges gauges, long healthCheckInterval) {
+    this.endpoints = endpoints.toArray(new Endpoint[0]);
+    this.ownedGroup = ownedGroup;
+    this.gauges = gauges;
+
+    CompletableFuture<?>[] warming = new CompletableFuture<?>[this.endpoints.length];
+    for (int i = 0; i < warming.length; i++) {
+      warming[i] = this.endpoints[i].client.warmedUp();
+    }
+    this.warmedUp = CompletableFuture.allOf(warming);
+
+    if (this.endpoints.length > 1 && group != null && healthCheckInterval > 0) {
+      this.healthCheck = group.scheduleWithFixedDelay(
+        this::checkHealth, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+    } else {
+      this.healthCheck = null;
+    }
+  }
+
+  /**
+   * Picks the endpoint for the next request.
+   */
+  Endpoint select() {
+    int count = endpoints.length;
+    if (count == 1) {
+      return endpoints[0];
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(count);
+    int j = random.nextInt(count - 1);
+    if (j >= i) j++;
+
+    Endpoint a = endpoints[i];
+    Endpoint b = endpoints[j];
+    long now = System.nanoTime();
+    boolean availableA = a.isAvailable(now);
+    boolean availableB = b.isAvailable(now);
+
+    if (availableA != availableB) {
+      return availableA ? a : b;
+    }
+
+    if (!availableA) {
+      for (int k = 0; k < count; k++) {
+        Endpoint endpoint = endpoints[(i + k) % count];
+        if (endpoint.isAvailable(now)) {
+          return endpoint;
+        }
+      }
+    }
+
+    return a.cost() <= b.cost() ? a : b;
+  }
+
+  /**
+   * Picks an endpoint other than the given one, if there are others.
+   */
+  Endpoint selectOther(Endpoint avoid) {
+    int count = endpoints.length;
+    Endpoint endpoint = select();
+
+    if (endpoint != avoid || count == 1) {
+      return endpoint;
+    }
+
+    int offset = ThreadLocalRandom.current().nextInt(count - 1);
+    for (int i = 0; i < count; i++) {
+      if (endpoints[i] == avoid) {
+        return endpoints[(i + 1 + offset) % count];
+      }
+    }
+
+    return endpoint;
+  }
+
+  /**
+   * Whether requests can go to more than one endpoint.
+   */
+  boolean hasAlternatives() {
+    return endpoints.length > 1;
+  }
+
+  CompletableFuture<Void> warmedUp() {
+    return warmedUp;
+  }
+
+  private void checkHealth() {
+    for (Endpoint endpoint : endpoints) {
+      if (!endpoint.checking.compareAndSet(false, true)) {
+        continue;
+      }
+
+      CompletableFuture<FullHttpResponse> ping;
+
+      try {
+        String uri = new URL(endpoint.root, PING_PATH).toString();
+        ping = endpoint.client.sendRequest(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri));
+      } catch (MalformedURLException | RuntimeException e) {
+        endpoint.checking.set(false);
+        log.debug("Could not check endpoint {}", endpoint.root, e);
+        continue;
+      }
+
+      ping.whenComplete((response, error) -> {
+        endpoint.checking.set(false);
+
+        if (error != null) {
+          endpoint.eject("health check failed: " + error);
+          return;
+        }
+
+        HttpResponseStatus status = response.status();
+        response.release();
+
+        if (status.code() == HttpResponseStatus.OK.code()) {
+          endpoint.reinstate();
+        } else {
+          endpoint.eject("health check returned " + status);
+        }
+      });
+    }
+  }
+
+  @Override
+  public ReferenceCounted touch(Object hint) {
+    return this;
+  }
+
+  @Override
+  protected void deallocate() {
+    if (healthCheck != null) {
+      healthCheck.cancel(false);
+    }
+
+    for (Endpoint endpoint : endpoints) {
+      endpoint.client.close();
+    }
+
+    if (ownedGroup != null) {
+      ownedGroup.shutdownGracefully();
+    }
+
+    gauges.unregister();
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.faunadb.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells whether a serialized FaunaDB query may have side effects, to know if it is safe to send twice.
+ */
+final class QueryEffects {
+
+  /**
+   * Functions writing to the database. Calls to user-defined functions are included since their
+   * effects are unknown.
+   */
+  private static final Set<String> WRITES = new HashSet<>(Arrays.asList(
+    "create", "create_class", "create_collection", "create_database", "create_function", "create_index",
+    "create_key", "create_role", "insert", "update", "replace", "delete", "remove", "login", "logout",
+    "move_database", "call"));
+
+  private static final String OBJECT = "object";
+
+  private QueryEffects() {
+  }
+
+  /**
+   * @param query the JSON form of a query
+   * @return true if any function call in the query may write
+   */
+  static boolean mayWrite(JsonNode query) {
+    if (query.isArray()) {
+      for (JsonNode element : query) {
+        if (mayWrite(element)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    if (!query.isObject()) {
+      return false;
+    }
+
+    // The keys of object literals are user data, only their values are expressions
+    JsonNode object = query.get(OBJECT);
+    if (object != null && query.size() == 1 && object.isObject()) {
+      for (JsonNode value : object) {
+        if (mayWrite(value)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    Iterator<Map.Entry<String, JsonNode>> fields = query.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+
+      if (WRITES.contains(field.getKey()) || mayWrite(field.getValue())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.faunadb.common;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.AsciiString;
+
+/**
+ * The cost of a query, as reported by FaunaDB in the response headers. Statistics missing from the
+ * response are reported as <code>0</code>.
+ */
+public final class QueryStats {
+
+  static final AsciiString X_COMPUTE_OPS = AsciiString.cached("X-Compute-Ops");
+  static final AsciiString X_BYTE_READ_OPS = AsciiString.cached("X-Byte-Read-Ops");
+  static final AsciiString X_BYTE_WRITE_OPS = AsciiString.cached("X-Byte-Write-Ops");
+  static final AsciiString X_QUERY_TIME = AsciiString.cached("X-Query-Time");
+  static final AsciiString X_STORAGE_BYTES_READ = AsciiString.cached("X-Storage-Bytes-Read");
+  static final AsciiString X_STORAGE_BYTES_WRITE = AsciiString.cached("X-Storage-Bytes-Write");
+  static final AsciiString X_TXN_RETRIES = AsciiString.cached("X-Txn-Retries");
+
+  /** The statistic headers, recorded by {@link Connection} in the histograms of {@link #METRIC_NAMES}. */
+  static final AsciiString[] HEADERS = {
+    X_COMPUTE_OPS, X_BYTE_READ_OPS, X_BYTE_WRITE_OPS, X_QUERY_TIME,
+    X_STORAGE_BYTES_READ, X_STORAGE_BYTES_WRITE, X_TXN_RETRIES
+  };
+  static final String[] METRIC_NAMES = {
+    "query-compute-ops", "query-byte-read-ops", "query-byte-write-ops", "query-time",
+    "query-storage-bytes-read", "query-storage-bytes-write", "query-txn-retries"
+  };
+
+  private final long computeOps;
+  private final long byteReadOps;
+  private final long byteWriteOps;
+  private final long queryTime;
+  private final long storageBytesRead;
+  private final long storageBytesWrite;
+  private final long txnRetries;
+
+  private QueryStats(HttpHeaders headers) {
+    this.computeOps = parse(headers, X_COMPUTE_OPS);
+    this.byteReadOps = parse(headers, X_BYTE_READ_OPS);
+    this.byteWriteOps = parse(headers, X_BYTE_WRITE_OPS);
+    this.queryTime = parse(headers, X_QUERY_TIME);
+    this.storageBytesRead = parse(headers, X_STORAGE_BYTES_READ);
+    this.storageBytesWrite = parse(headers, X_STORAGE_BYTES_WRITE);
+    this.txnRetries = parse(headers, X_TXN_RETRIES);
+  }
+
+  /**
+   * Reads the statistics reported in the headers of a response.
+   *
+   * @param headers the response headers
+   * @return the {@link QueryStats} of the response
+   */
+  public static QueryStats of(HttpHeaders headers) {
+    return new QueryStats(headers);
+  }
+
+  /**
+   * Parses a numeric statistic header.
+   *
+   * @return the statistic, or <code>-1</code> if the header is missing or invalid
+   */
+  static long parseOrMissing(HttpHeaders headers, AsciiString name) {
+    String value = headers.get(name);
+    if (value == null) {
+      return -1;
+    }
+
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static long parse(HttpHeaders headers, AsciiString name) {
+    return Math.max(parseOrMissing(headers, name), 0);
+  }
+
+  /**
+   * @return the compute operations used by the query
+   */
+  public long computeOps() {
+    return computeOps;
+  }
+
+  /**
+   * @return the read operations used by the query
+   */
+  public long byteReadOps() {
+    return byteReadOps;
+  }
+
+  /**
+   * @return the write operations used by the query
+   */
+  public long byteWriteOps() {
+    return byteWriteOps;
+  }
+
+  /**
+   * @return the time FaunaDB spent running the query, in milliseconds
+   */
+  public long queryTime() {
+    return queryTime;
+  }
+
+  /**
+   * @return the number of bytes read from storage by the query
+   */
+  public long storageBytesRead() {
+    return storageBytesRead;
+  }
+
+  /**
+   * @return the number of bytes written to storage by the query
+   */
+  public long storageBytesWrite() {
+    return storageBytesWrite;
+  }
+
+  /**
+   * @return the number of times the transaction was retried because of contention
+   */
+  public long txnRetries() {
+    return txnRetries;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryStats(computeOps=" + computeOps + ", byteReadOps=" + byteReadOps + ", byteWriteOps=" + byteWriteOps +
+      ", queryTime=" + queryTime + "ms, storageBytesRead=" + storageBytesRead +
+      ", storageBytesWrite=" + storageBytesWrite + ", txnRetries=" + txnRetries + ")";
+  }
+
+}
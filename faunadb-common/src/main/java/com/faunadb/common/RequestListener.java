@@ -0,0 +1,86 @@
+package com.faunadb.common;
+
+/**
+ * Receives the lifecycle events of the requests sent by a {@link Connection}, for instance to bridge
+ * them to a tracing system.
+ *
+ * <p>Each request sent to an endpoint, be it the first attempt of a call, one of its retries or a hedge,
+ * is reported as its own {@link RequestTrace}, starting with {@link #onRequestStart} and ending with
+ * either {@link #onParseComplete} or {@link #onFailure}. A response with an error status is not a
+ * failure: its status is reported by {@link #onResponseComplete}.</p>
+ *
+ * <p>Times are taken from {@link System#nanoTime()}. Callbacks run on the I/O threads of the connection
+ * and must return quickly. Exceptions they throw are logged and otherwise ignored.</p>
+ *
+ * @see Connection.Builder#withRequestListener(RequestListener)
+ */
+public interface RequestListener {
+
+  /**
+   * Called before the request is sent to its endpoint.
+   *
+   * @param request the request
+   * @param nanoTime the time the request started
+   */
+  default void onRequestStart(RequestTrace request, long nanoTime) {
+  }
+
+  /**
+   * Called once the request got a connection to its endpoint.
+   *
+   * @param request the request
+   * @param nanoTime the time the connection was acquired
+   */
+  default void onChannelAcquired(RequestTrace request, long nanoTime) {
+  }
+
+  /**
+   * Called once the request has been written to its connection.
+   *
+   * @param request the request
+   * @param bytes the size of the request body, as sent
+   * @param nanoTime the time the write completed
+   */
+  default void onRequestWritten(RequestTrace request, long bytes, long nanoTime) {
+  }
+
+  /**
+   * Called when the first part of the response is received.
+   *
+   * @param request the request
+   * @param nanoTime the time the response started
+   */
+  default void onFirstByte(RequestTrace request, long nanoTime) {
+  }
+
+  /**
+   * Called once the whole response has been received.
+   *
+   * @param request the request
+   * @param status the response status code
+   * @param nanoTime the time the last part of the response was received
+   */
+  default void onResponseComplete(RequestTrace request, int status, long nanoTime) {
+  }
+
+  /**
+   * Called once the response body has been parsed, which ends the request.
+   *
+   * @param request the request
+   * @param nanoTime the time the body was parsed
+   */
+  default void onParseComplete(RequestTrace request, long nanoTime) {
+  }
+
+  /**
+   * Called when the request fails, which ends it. Requests abandoned because another request of the same
+   * call won, or because the call was cancelled, fail with a {@link java.util.concurrent.CancellationException}.
+   *
+   * @param request the request
+   * @param cause the failure
+   * @param nanoTime the time the request failed
+   */
+  default void onFailure(RequestTrace request, Throwable cause, long nanoTime) {
+  }
+
+}
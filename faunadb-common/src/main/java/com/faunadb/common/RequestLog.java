@@ -0,0 +1,242 @@
+package com.faunadb.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.faunadb.common.http.HttpJsonResponse;
+import com.faunadb.common.http.SharedTimer;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AsciiString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Logs the requests of a connection and its sessions, see {@link RequestLogPolicy}.
+ *
+ * <p>Messages are parameterized and bodies are wrapped in {@link Excerpt}s, so nothing is rendered
+ * unless the message is actually logged. Error summaries are only scheduled once an endpoint fails:
+ * a healthy endpoint costs a counter increment per request.</p>
+ */
+final class RequestLog {
+
+  private static final AsciiString X_FAUNADB_HOST = AsciiString.cached("X-FaunaDB-Host");
+  private static final AsciiString X_FAUNADB_BUILD = AsciiString.cached("X-FaunaDB-Build");
+  private static final ObjectMapper json = new ObjectMapper();
+
+  private final Logger log = LoggerFactory.getLogger(Connection.class);
+  private final RequestLogPolicy policy;
+  private final Map<LoadBalancer.Endpoint, Summary> summaries = new ConcurrentHashMap<>();
+
+  RequestLog(RequestLogPolicy policy) {
+    this.policy = policy;
+  }
+
+  void success(FullHttpRequest request, String uri, int attempts, long startTime, HttpResponse response) {
+    if (!log.isDebugEnabled() || !sampled(policy.sampleRate)) {
+      return;
+    }
+
+    log.debug("Request completed: method={} uri={} attempts={} elapsedMs={} status={} faunaHost={} faunaBuild={} " +
+        "body={} response={}",
+      request.method(), uri, attempts, elapsedMillis(startTime), response.status().code(),
+      response.headers().get(X_FAUNADB_HOST, "Unknown"), response.headers().get(X_FAUNADB_BUILD, "Unknown"),
+      new Excerpt(request.content(), policy.maxBodyBytes), new Excerpt(responseBody(response), policy.maxBodyBytes));
+  }
+
+  void failure(FullHttpRequest request, String uri, int attempts, long startTime, Throwable error) {
+    if (!log.isInfoEnabled() || !sampled(policy.failureSampleRate)) {
+      return;
+    }
+
+    log.info("Request failed: method={} uri={} attempts={} elapsedMs={} error={} body={}",
+      request.method(), uri, attempts, elapsedMillis(startTime), error.getMessage(),
+      new Excerpt(request.content(), policy.maxBodyBytes), error);
+  }
+
+  /**
+   * Counts a request sent to an endpoint towards the endpoint error summary.
+   *
+   * @param error the cause of the error, such as an exception name or a status code, or <code>null</code>
+   */
+  void record(LoadBalancer.Endpoint endpoint, String error) {
+    if (policy.summaryIntervalNanos <= 0) {
+      return;
+    }
+
+    summaries.computeIfAbsent(endpoint, Summary::new).record(error);
+  }
+
+  private static boolean sampled(double rate) {
+    return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+  }
+
+  private static long elapsedMillis(long startTime) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
+
+  private static Object responseBody(HttpResponse response) {
+    if (response instanceof FullHttpResponse) {
+      return ((FullHttpResponse) response).content();
+    }
+
+    if (response instanceof HttpJsonResponse) {
+      return ((HttpJsonResponse) response).body();
+    }
+
+    return null;
+  }
+
+  /**
+   * The errors of an endpoint since its last summary.
+   */
+  private final class Summary {
+
+    private final LoadBalancer.Endpoint endpoint;
+    private final LongAdder requests = new LongAdder();
+    private final Map<String, Integer> causes = new TreeMap<>();
+    private int errors = 0;
+    private long since = System.nanoTime();
+
+    Summary(LoadBalancer.Endpoint endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    void record(String error) {
+      requests.increment();
+
+      if (error == null) {
+        return;
+      }
+
+      synchronized (this) {
+        causes.merge(error, 1, Integer::sum);
+        if (errors++ > 0) {
+          return;
+        }
+      }
+
+      SharedTimer.get().newTimeout(t -> flush(), policy.summaryIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void flush() {
+      long now = System.nanoTime();
+      long total = requests.sumThenReset();
+      String failures;
+      int count;
+      long interval;
+
+      synchronized (this) {
+        failures = causes.toString();
+        count = errors;
+        interval = TimeUnit.NANOSECONDS.toMillis(now - since);
+        causes.clear();
+        errors = 0;
+        since = now;
+      }
+
+      log.warn("Endpoint errors: endpoint={} errors={} requests={} intervalMs={} causes={}",
+        endpoint.root, count, Math.max(total, count), interval, failures);
+    }
+  }
+
+  /**
+   * The beginning of a body, rendered when logged.
+   */
+  private static final class Excerpt {
+
+    private final Object body;
+    private final int maxBytes;
+
+    Excerpt(Object body, int maxBytes) {
+      this.body = body;
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public String toString() {
+      if (body instanceof ByteBuf) {
+        ByteBuf content = (ByteBuf) body;
+        int length = content.readableBytes();
+
+        if (length <= maxBytes) {
+          return content.toString(content.readerIndex(), length, UTF_8);
+        }
+
+        // Cut before a character rather than in the middle of its UTF-8 sequence
+        int cut = maxBytes;
+        while (cut > 0 && (content.getByte(content.readerIndex() + cut) & 0xC0) == 0x80) {
+          cut--;
+        }
+
+        return content.toString(content.readerIndex(), cut, UTF_8) + "...(" + length + " bytes)";
+      }
+
+      if (body instanceof JsonNode) {
+        BoundedWriter out = new BoundedWriter(maxBytes);
+
+        try {
+          json.writeValue(out, body);
+        } catch (IOException e) {
+          if (!out.truncated) return "(unprintable)";
+        }
+
+        return out.truncated ? out.text + "...(truncated)" : out.text.toString();
+      }
+
+      return "";
+    }
+  }
+
+  /**
+   * Collects written text up to a size, failing the write beyond it. The text is never cut between the
+   * two halves of a surrogate pair.
+   */
+  private static final class BoundedWriter extends Writer {
+
+    final StringBuilder text = new StringBuilder();
+    private final int max;
+    boolean truncated = false;
+
+    BoundedWriter(int max) {
+      this.max = max;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+      int count = Math.min(length, max - text.length());
+      text.append(chars, offset, count);
+
+      if (count < length) {
+        int last = text.length() - 1;
+        if (last >= 0 && Character.isHighSurrogate(text.charAt(last))) {
+          text.setLength(last);
+        }
+
+        truncated = true;
+        throw new IOException("Excerpt full");
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+
+/**
+ * Describes how a {@link Connection} logs its requests.
+ *
+ * <p>Failed requests are logged at <code>INFO</code> level, and completed requests at <code>DEBUG</code>
+ * level, as a single line of <code>key=value</code> fields. Only a sample of the completed requests is
+ * logged, while failed requests are all logged by default. Only an excerpt of their bodies is logged,
+ * rendered once the log level is known to be enabled.</p>
+ *
+ * <p>Errors are also summed up per endpoint: the first error of an endpoint starts a summary interval,
+ * at the end of which a single <code>WARN</code> line reports how many requests the endpoint served
+ * and failed, and the causes of the failures. An error is a failed request, or a response with a
+ * <code>429</code> or <code>5xx</code> status.</p>
+ */
+public final class RequestLogPolicy {
+
+  /**
+   * Logs every failed request and 1% of the completed ones, with body excerpts of up to 1024 bytes, and
+   * sums up errors every 10s.
+   */
+  public static final RequestLogPolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link RequestLogPolicy} instance. Use the {@link RequestLogPolicy#builder}
+   * method to create an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private double sampleRate = 0.01;
+    private double failureSampleRate = 1;
+    private int maxBodyBytes = 1024;
+    private Duration summaryInterval = Duration.ofSeconds(10);
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the fraction of the completed requests logged individually.
+     *
+     * @param sampleRate a fraction between <code>0</code>, to log no request, and <code>1</code>, to log
+     *                   every request. Defaults to <code>0.01</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withSampleRate(double sampleRate) {
+      if (!(sampleRate >= 0 && sampleRate <= 1)) {
+        throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+      }
+
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the failed requests logged individually.
+     *
+     * @param failureSampleRate a fraction between <code>0</code>, to log no failure, and <code>1</code>, to
+     *                          log every failure. Defaults to <code>1</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withFailureSampleRate(double failureSampleRate) {
+      if (!(failureSampleRate >= 0 && failureSampleRate <= 1)) {
+        throw new IllegalArgumentException("failureSampleRate must be between 0 and 1");
+      }
+
+      this.failureSampleRate = failureSampleRate;
+      return this;
+    }
+
+    /**
+     * Sets how much of the request and response bodies is logged. Longer bodies are cut, and their size
+     * is logged instead of the rest.
+     *
+     * @param maxBodyBytes the maximum excerpt size in bytes, <code>0</code> to leave bodies out.
+     *                     Defaults to <code>1024</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxBodyBytes(int maxBodyBytes) {
+      if (maxBodyBytes < 0) {
+        throw new IllegalArgumentException("maxBodyBytes must not be negative");
+      }
+
+      this.maxBodyBytes = maxBodyBytes;
+      return this;
+    }
+
+    /**
+     * Sets the interval errors are summed up over.
+     *
+     * @param summaryInterval the interval, {@link Duration#ZERO} to disable summaries. Defaults to 10s
+     * @return this {@link Builder} object
+     */
+    public Builder withSummaryInterval(Duration summaryInterval) {
+      if (summaryInterval.isNegative()) {
+        throw new IllegalArgumentException("summaryInterval must not be negative");
+      }
+
+      this.summaryInterval = summaryInterval;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link RequestLogPolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public RequestLogPolicy build() {
+      return new RequestLogPolicy(this);
+    }
+  }
+
+  final double sampleRate;
+  final double failureSampleRate;
+  final int maxBodyBytes;
+  final long summaryIntervalNanos;
+
+  private RequestLogPolicy(Builder builder) {
+    this.sampleRate = builder.sampleRate;
+    this.failureSampleRate = builder.failureSampleRate;
+    this.maxBodyBytes = builder.maxBodyBytes;
+    this.summaryIntervalNanos = builder.summaryInterval.toNanos();
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.faunadb.common;
+
+import java.net.URL;
+
+/**
+ * A request sent to an endpoint, as reported to a {@link RequestListener}.
+ */
+public final class RequestTrace {
+
+  private final URL endpoint;
+  private final String method;
+  private final String path;
+  private final int attempt;
+  private final boolean hedge;
+  private volatile Object attachment;
+
+  RequestTrace(URL endpoint, String method, String path, int attempt, boolean hedge) {
+    this.endpoint = endpoint;
+    this.method = method;
+    this.path = path;
+    this.attempt = attempt;
+    this.hedge = hedge;
+  }
+
+  /**
+   * @return the root URL of the endpoint the request is sent to
+   */
+  public URL endpoint() {
+    return endpoint;
+  }
+
+  /**
+   * @return the HTTP method of the request
+   */
+  public String method() {
+    return method;
+  }
+
+  /**
+   * @return the path of the request, relative to the endpoint root, empty for queries
+   */
+  public String path() {
+    return path;
+  }
+
+  /**
+   * @return the attempt of the call the request belongs to, starting at 1
+   */
+  public int attempt() {
+    return attempt;
+  }
+
+  /**
+   * @return whether the request hedges a slower request of the same attempt
+   */
+  public boolean isHedge() {
+    return hedge;
+  }
+
+  /**
+   * Returns the object attached by the listener, such as a tracing span.
+   *
+   * @return the attached object, or <code>null</code>
+   */
+  public Object attachment() {
+    return attachment;
+  }
+
+  /**
+   * Attaches an object to the request, such as a tracing span started by
+   * {@link RequestListener#onRequestStart(RequestTrace, long)}.
+   *
+   * @param attachment the object to attach
+   */
+  public void attach(Object attachment) {
+    this.attachment = attachment;
+  }
+
+  @Override
+  public String toString() {
+    return method + " /" + path + " to " + endpoint + " (attempt " + attempt + (hedge ? ", hedge)" : ")");
+  }
+
+}
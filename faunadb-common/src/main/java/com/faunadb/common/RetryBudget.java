@@ -0,0 +1,51 @@
+package com.faunadb.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket bounding the number of retries, or hedges, to a fraction of the requests.
+ */
+final class RetryBudget {
+
+  /** Balance units per retry, so that fractions of retries can be deposited. */
+  private static final long SCALE = 1000;
+
+  private final long deposit;
+  private final long capacity;
+  private final AtomicLong balance;
+
+  RetryBudget(double ratio, int burst) {
+    this.deposit = Math.round(ratio * SCALE);
+    this.capacity = burst * SCALE;
+    this.balance = new AtomicLong(capacity);
+  }
+
+  /**
+   * Earns the fraction of a retry granted to each request.
+   */
+  void deposit() {
+    if (deposit > 0 && balance.get() < capacity) {
+      balance.accumulateAndGet(deposit, (current, amount) -> Math.min(current + amount, capacity));
+    }
+  }
+
+  /**
+   * Takes a retry from the budget.
+   *
+   * @return false if the budget does not hold a retry
+   */
+  boolean tryWithdraw() {
+    for (;;) {
+      long current = balance.get();
+
+      if (current < SCALE) {
+        return false;
+      }
+
+      if (balance.compareAndSet(current, current - SCALE)) {
+        return true;
+      }
+    }
+  }
+
+}
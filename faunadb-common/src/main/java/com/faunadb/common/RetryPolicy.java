@@ -0,0 +1,165 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Describes how a {@link Connection} retries failed requests.
+ *
+ * <p>Requests are retried when they failed in a way that is likely to be transient and when
+ * retrying cannot apply their effects twice:</p>
+ * <ul>
+ *   <li>Connection failures and rate limited (429) requests are always retried, as FaunaDB did not
+ *   process them.</li>
+ *   <li>Contended (409) requests, other I/O errors, timeouts and <code>502</code>, <code>503</code> and
+ *   <code>504</code> responses are only retried for requests without side effects: <code>GET</code>
+ *   requests and queries that do not write.</li>
+ * </ul>
+ *
+ * <p>Connections do not retry requests unless a policy is set.</p>
+ *
+ * <p>Retries wait for an exponentially growing delay with full jitter, and never go past the
+ * deadline of the request. They are also bounded by a retry budget shared by every request of the
+ * connection: each request earns a fraction of a retry, up to a burst, so retries cannot multiply
+ * the load of a struggling cluster.</p>
+ */
+public final class RetryPolicy {
+
+  /**
+   * Never retries requests.
+   */
+  public static final RetryPolicy NONE = builder().withMaxAttempts(1).build();
+
+  /**
+   * Up to 3 attempts, with delays starting at 50ms and capped at 2s, and a budget of a retry every
+   * 10 requests on top of a burst of 10 retries.
+   */
+  public static final RetryPolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link RetryPolicy} instance. Use the {@link RetryPolicy#builder} method to create
+   * an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private int maxAttempts = 3;
+    private Duration baseDelay = Duration.ofMillis(50);
+    private Duration maxDelay = Duration.ofSeconds(2);
+    private double budgetRatio = 0.1;
+    private int budgetBurst = 10;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the maximum number of times a request is sent, including the first one.
+     *
+     * @param maxAttempts the maximum number of attempts, at least <code>1</code>. Defaults to <code>3</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("maxAttempts must be at least 1");
+      }
+
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the delays before retries. The n-th retry waits for a random delay between zero and
+     * <code>baseDelay * 2^(n - 1)</code>, capped at <code>maxDelay</code>.
+     *
+     * @param baseDelay the upper bound of the first delay. Defaults to 50ms
+     * @param maxDelay the upper bound of any delay. Defaults to 2s
+     * @return this {@link Builder} object
+     */
+    public Builder withBackoff(Duration baseDelay, Duration maxDelay) {
+      if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+        throw new IllegalArgumentException("Delays must be positive, and baseDelay at most maxDelay");
+      }
+
+      this.baseDelay = baseDelay;
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * Sets the retry budget. Each request adds <code>ratio</code> retries to the budget, which holds at
+     * most <code>burst</code> retries and starts full. A retry is only made if the budget holds one.
+     *
+     * @param ratio the retries earned by each request, between <code>0</code> and <code>1</code>. Defaults to <code>0.1</code>
+     * @param burst the maximum number of retries in the budget. Defaults to <code>10</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withBudget(double ratio, int burst) {
+      if (ratio < 0 || ratio > 1 || burst < 0) {
+        throw new IllegalArgumentException("ratio must be between 0 and 1, and burst must not be negative");
+      }
+
+      this.budgetRatio = ratio;
+      this.budgetBurst = burst;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link RetryPolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+
+  private final int maxAttempts;
+  private final long baseDelayNanos;
+  private final long maxDelayNanos;
+  private final double budgetRatio;
+  private final int budgetBurst;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.baseDelayNanos = builder.baseDelay.toNanos();
+    this.maxDelayNanos = builder.maxDelay.toNanos();
+    this.budgetRatio = builder.budgetRatio;
+    this.budgetBurst = builder.budgetBurst;
+  }
+
+  /**
+   * Returns the maximum number of times a request is sent, including the first one.
+   *
+   * @return the maximum number of attempts
+   */
+  public int maxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Picks the delay before a retry.
+   *
+   * @param retry the retry number, starting at <code>1</code>
+   * @return the delay in nanoseconds
+   */
+  long delayNanos(int retry) {
+    long bound = baseDelayNanos << Math.min(retry - 1, 30);
+    if (bound <= 0 || bound > maxDelayNanos) {
+      bound = maxDelayNanos;
+    }
+
+    return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+  }
+
+  RetryBudget newBudget() {
+    return new RetryBudget(budgetRatio, budgetBurst);
+  }
+
+}
@@ -0,0 +1,199 @@
+package com.faunadb.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps the session clients of a client, keyed by secret, so that switching between many tenants
+ * does not open a new session for every query. See {@link SessionCachePolicy}.
+ *
+ * <p>Sessions are opened on their first lookup and belong to the cache: they are closed when evicted,
+ * and when the cache is closed. Closing a session only releases its share of the parent transport,
+ * so a session evicted while in use keeps working as long as its parent is open.</p>
+ *
+ * <p>Looking up a cached session takes no lock, and a session being opened only holds back lookups of
+ * the same secret. Evictions run on lookups, one at a time, and lookups do not wait for them: the cache
+ * may briefly hold more sessions than its maximum, and expired sessions are swept about once a second,
+ * although an expired session is never returned.</p>
+ *
+ * @param <S> the type of the sessions
+ */
+public final class SessionCache<S> implements AutoCloseable {
+
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final SessionCachePolicy policy;
+  private final Function<String, S> open;
+  private final Consumer<S> close;
+  private final ConcurrentHashMap<String, Entry<S>> sessions = new ConcurrentHashMap<>();
+  private final ReentrantLock evictions = new ReentrantLock();
+  private volatile long nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+  private volatile boolean closed = false;
+
+  /**
+   * @param policy the {@link SessionCachePolicy} of the cache
+   * @param open opens the session of a secret
+   * @param close closes an evicted session
+   */
+  public SessionCache(SessionCachePolicy policy, Function<String, S> open, Consumer<S> close) {
+    this.policy = policy;
+    this.open = open;
+    this.close = close;
+  }
+
+  /**
+   * Returns the session of a secret, opening it if it is not cached yet. The session must not be
+   * closed by the caller.
+   *
+   * @param secret the secret authenticating the queries of the session
+   * @return the session of the secret
+   */
+  public S get(String secret) {
+    checkOpen();
+
+    long now = System.nanoTime();
+    Entry<S> entry = sessions.get(secret);
+
+    if (entry == null || expired(entry, now)) {
+      if (entry != null) {
+        remove(secret, entry);
+      }
+
+      entry = sessions.computeIfAbsent(secret, s -> new Entry<>(open.apply(s)));
+    }
+
+    entry.lastAccess = now;
+
+    // A session opened while the cache was closing would never be closed otherwise
+    if (closed) {
+      remove(secret, entry);
+      checkOpen();
+    }
+
+    if (sessions.size() > policy.maxSessions || policy.expireAfterAccessNanos > 0 && now - nextSweep >= 0) {
+      evict(now);
+    }
+
+    return entry.session;
+  }
+
+  /**
+   * Evicts the session of a secret, for instance once the secret has been revoked.
+   *
+   * @param secret the secret of the session
+   */
+  public void invalidate(String secret) {
+    Entry<S> entry = sessions.remove(secret);
+
+    if (entry != null) {
+      close.accept(entry.session);
+    }
+  }
+
+  /**
+   * @return the number of sessions kept
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Closes every session kept. Sessions can not be looked up afterwards.
+   */
+  @Override
+  public void close() {
+    closed = true;
+
+    for (Map.Entry<String, Entry<S>> entry : sessions.entrySet()) {
+      remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Can not get a session from a closed session cache");
+    }
+  }
+
+  private boolean expired(Entry<S> entry, long now) {
+    return policy.expireAfterAccessNanos > 0 && now - entry.lastAccess >= policy.expireAfterAccessNanos;
+  }
+
+  /**
+   * Removes and closes a session, unless it has already been replaced or removed by another thread.
+   */
+  private void remove(String secret, Entry<S> entry) {
+    if (sessions.remove(secret, entry)) {
+      close.accept(entry.session);
+    }
+  }
+
+  /**
+   * Removes the expired sessions, and the least recently used ones beyond the maximum. Skipped when
+   * another thread is already evicting.
+   */
+  private void evict(long now) {
+    if (!evictions.tryLock()) {
+      return;
+    }
+
+    List<S> evicted = Collections.emptyList();
+
+    try {
+      if (policy.expireAfterAccessNanos > 0 && now - nextSweep >= 0) {
+        nextSweep = now + SWEEP_INTERVAL_NANOS;
+
+        for (Map.Entry<String, Entry<S>> entry : sessions.entrySet()) {
+          if (expired(entry.getValue(), now) && sessions.remove(entry.getKey(), entry.getValue())) {
+            evicted = add(evicted, entry.getValue().session);
+          }
+        }
+      }
+
+      while (sessions.size() > policy.maxSessions) {
+        Map.Entry<String, Entry<S>> eldest = null;
+
+        for (Map.Entry<String, Entry<S>> entry : sessions.entrySet()) {
+          if (eldest == null || entry.getValue().lastAccess - eldest.getValue().lastAccess < 0) {
+            eldest = entry;
+          }
+        }
+
+        if (eldest != null && sessions.remove(eldest.getKey(), eldest.getValue())) {
+          evicted = add(evicted, eldest.getValue().session);
+        }
+      }
+    } finally {
+      evictions.unlock();
+    }
+
+    evicted.forEach(close);
+  }
+
+  private static <S> List<S> add(List<S> evicted, S session) {
+    if (evicted.isEmpty()) {
+      evicted = new ArrayList<>();
+    }
+
+    evicted.add(session);
+    return evicted;
+  }
+
+  private static final class Entry<S> {
+
+    final S session;
+    volatile long lastAccess = System.nanoTime();
+
+    Entry(S session) {
+      this.session = session;
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+package com.faunadb.common;
+
+import java.time.Duration;
+
+/**
+ * Describes how many session clients a {@link SessionCache} keeps, and for how long.
+ *
+ * <p>Sessions are evicted once the cache is full, least recently used first, and once they have not
+ * been used for the expiry interval.</p>
+ */
+public final class SessionCachePolicy {
+
+  /**
+   * Keeps up to 1024 sessions, each for up to 10 minutes after its last use.
+   */
+  public static final SessionCachePolicy DEFAULT = builder().build();
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link SessionCachePolicy} instance. Use the {@link SessionCachePolicy#builder}
+   * method to create an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private int maxSessions = 1024;
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+
+    private Builder() {
+    }
+
+    /**
+     * Sets how many sessions are kept. The least recently used session is evicted when a new one
+     * would exceed it.
+     *
+     * @param maxSessions the maximum number of sessions, at least <code>1</code>. Defaults to <code>1024</code>
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxSessions(int maxSessions) {
+      if (maxSessions < 1) {
+        throw new IllegalArgumentException("maxSessions must be positive");
+      }
+
+      this.maxSessions = maxSessions;
+      return this;
+    }
+
+    /**
+     * Sets how long an unused session is kept.
+     *
+     * @param expireAfterAccess the interval, {@link Duration#ZERO} to keep sessions until they are evicted
+     *                          by newer ones. Defaults to 10 minutes
+     * @return this {@link Builder} object
+     */
+    public Builder withExpireAfterAccess(Duration expireAfterAccess) {
+      if (expireAfterAccess.isNegative()) {
+        throw new IllegalArgumentException("expireAfterAccess must not be negative");
+      }
+
+      this.expireAfterAccess = expireAfterAccess;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link SessionCachePolicy} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public SessionCachePolicy build() {
+      return new SessionCachePolicy(this);
+    }
+  }
+
+  final int maxSessions;
+  final long expireAfterAccessNanos;
+
+  private SessionCachePolicy(Builder builder) {
+    this.maxSessions = builder.maxSessions;
+    this.expireAfterAccessNanos = builder.expireAfterAccess.toNanos();
+  }
+
+}
@@ -0,0 +1,60 @@
+package com.faunadb.common.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Buffers the whole response body, as {@link io.netty.handler.codec.http.HttpObjectAggregator} does,
+ * producing a {@link FullHttpResponse}.
+ */
+final class FullHttpResponseReader implements HttpResponseReader<FullHttpResponse> {
+
+  private final ByteBufAllocator alloc;
+  private final int maxContentLength;
+
+  private HttpResponse response;
+  private CompositeByteBuf content;
+
+  FullHttpResponseReader(ByteBufAllocator alloc, int maxContentLength) {
+    this.alloc = alloc;
+    this.maxContentLength = maxContentLength;
+  }
+
+  @Override
+  public void start(HttpResponse response) {
+    this.response = response;
+    this.content = alloc.compositeBuffer();
+  }
+
+  @Override
+  public void content(ByteBuf chunk) throws TooLongFrameException {
+    if (content.readableBytes() > maxContentLength - chunk.readableBytes()) {
+      throw new TooLongFrameException("Response content length exceeded " + maxContentLength + " bytes");
+    }
+
+    content.addComponent(true, chunk.retain());
+  }
+
+  @Override
+  public FullHttpResponse finish(LastHttpContent last) {
+    FullHttpResponse full = new DefaultFullHttpResponse(
+      response.protocolVersion(), response.status(), content, response.headers(), last.trailingHeaders());
+    content = null;
+    return full;
+  }
+
+  @Override
+  public void discard() {
+    if (content != null) {
+      content.release();
+      content = null;
+    }
+  }
+
+}
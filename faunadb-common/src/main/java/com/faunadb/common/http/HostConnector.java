@@ -0,0 +1,203 @@
+package com.faunadb.common.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Opens connections to a host name without blocking, racing its addresses.
+ *
+ * <p>The host is resolved by Netty's asynchronous DNS resolver, whose cache honors the records TTL.
+ * Successive connections start from successive addresses, so they spread over every A and AAAA record.
+ * Addresses are tried in the "Happy Eyeballs" fashion of RFC 8305: alternating address families, a new
+ * attempt starts whenever the previous one fails or has not succeeded within {@link #ATTEMPT_DELAY_MS}
+ * milliseconds. The first attempt to succeed wins and the others are closed.</p>
+ */
+final class HostConnector {
+
+  static final long ATTEMPT_DELAY_MS = 250;
+
+  private final String host;
+  private final int port;
+  private final EventLoop executor;
+  private final DnsNameResolver resolver;
+  private final AtomicInteger rotation = new AtomicInteger();
+
+  HostConnector(String host, int port, EventLoop executor, HttpTransport transport) {
+    this.host = host;
+    this.port = port;
+    this.executor = executor;
+    this.resolver = new DnsNameResolverBuilder(executor)
+      .channelType(transport.datagramChannelClass())
+      .resolveCache(new DefaultDnsCache())
+      .build();
+  }
+
+  /**
+   * Resolves the host and connects to one of its addresses.
+   *
+   * @param connector opens a connection to a single address
+   * @return a {@link CompletableFuture} completed with the first connection to succeed, or failed with
+   * the last error if every address failed
+   */
+  CompletableFuture<Channel> connect(Function<SocketAddress, CompletableFuture<Channel>> connector) {
+    CompletableFuture<Channel> connected = new CompletableFuture<>();
+
+    resolver.resolveAll(host).addListener(future -> {
+      if (!future.isSuccess()) {
+        connected.completeExceptionally(future.cause());
+        return;
+      }
+
+      @SuppressWarnings("unchecked")
+      List<InetAddress> resolved = (List<InetAddress>) future.getNow();
+      race(order(resolved), connector, connected);
+    });
+
+    return connected;
+  }
+
+  /**
+   * Connects to one of the given addresses, trying them in order.
+   *
+   * @param connected completed with the first connection to succeed, or failed with the last error
+   */
+  void race(List<InetSocketAddress> addresses, Function<SocketAddress, CompletableFuture<Channel>> connector,
+            CompletableFuture<Channel> connected) {
+    new Race(addresses, connector, connected).next();
+  }
+
+  void close() {
+    resolver.close();
+  }
+
+  /**
+   * Rotates the addresses of each family and interleaves the families, starting with the one the
+   * resolver preferred.
+   */
+  List<InetSocketAddress> order(List<InetAddress> resolved) {
+    boolean preferV6 = resolved.get(0) instanceof Inet6Address;
+    List<InetAddress> preferred = new ArrayList<>();
+    List<InetAddress> other = new ArrayList<>();
+
+    for (InetAddress address : resolved) {
+      if (address instanceof Inet6Address == preferV6) {
+        preferred.add(address);
+      } else {
+        other.add(address);
+      }
+    }
+
+    int offset = rotation.getAndIncrement();
+    List<InetSocketAddress> ordered = new ArrayList<>(resolved.size());
+
+    for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+      if (i < preferred.size()) {
+        ordered.add(new InetSocketAddress(preferred.get(Math.floorMod(offset + i, preferred.size())), port));
+      }
+
+      if (i < other.size()) {
+        ordered.add(new InetSocketAddress(other.get(Math.floorMod(offset + i, other.size())), port));
+      }
+    }
+
+    return ordered;
+  }
+
+  private final class Race {
+
+    private final List<InetSocketAddress> addresses;
+    private final Function<SocketAddress, CompletableFuture<Channel>> connector;
+    private final CompletableFuture<Channel> winner;
+
+    private int started = 0;
+    private int pending = 0;
+    private Throwable lastError;
+    private ScheduledFuture<?> timer;
+
+    Race(List<InetSocketAddress> addresses, Function<SocketAddress, CompletableFuture<Channel>> connector,
+         CompletableFuture<Channel> winner) {
+      this.addresses = addresses;
+      this.connector = connector;
+      this.winner = winner;
+    }
+
+    void next() {
+      SocketAddress address;
+
+      synchronized (this) {
+        if (winner.isDone() || started >= addresses.size()) {
+          return;
+        }
+
+        if (timer != null) {
+          timer.cancel(false);
+        }
+
+        address = addresses.get(started++);
+        pending++;
+
+        if (started < addresses.size()) {
+          timer = executor.schedule(this::next, ATTEMPT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+      }
+
+      CompletableFuture<Channel> attempt;
+
+      try {
+        attempt = connector.apply(address);
+      } catch (Throwable t) {
+        attempt = new CompletableFuture<>();
+        attempt.completeExceptionally(t);
+      }
+
+      attempt.whenComplete(this::onResult);
+    }
+
+    private void onResult(Channel channel, Throwable error) {
+      boolean startNext = false;
+      boolean failed = false;
+
+      synchronized (this) {
+        pending--;
+
+        if (error == null) {
+          if (timer != null) {
+            timer.cancel(false);
+          }
+        } else {
+          lastError = error;
+
+          if (started < addresses.size()) {
+            startNext = true;
+          } else {
+            failed = pending == 0;
+          }
+        }
+      }
+
+      if (channel != null && !winner.complete(channel)) {
+        channel.close();
+      } else if (startNext) {
+        next();
+      } else if (failed) {
+        winner.completeExceptionally(lastError);
+      }
+    }
+  }
+
+}
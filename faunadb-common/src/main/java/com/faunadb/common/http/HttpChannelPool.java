@@ -0,0 +1,577 @@
+package com.faunadb.common.http;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of channels connected to a single endpoint.
+ *
+ * <p>At most {@code maxConnections} channels are open, or being opened, at any time. Callers that
+ * can not be served immediately wait in a FIFO queue of at most {@code maxPendingAcquires} entries,
+ * and are handed the next released channel in arrival order. A waiter that is not served within
+ * {@code acquireTimeout} milliseconds fails with a {@link TimeoutException}.</p>
+ *
+ * <p>A channel may be acquired by several callers at once when the connector sets its
+ * {@link #MAX_CONCURRENCY} attribute, as is the case for HTTP/2 connections. Such a channel stays
+ * available until it carries that many requests. While a multiplexed pool is opening a channel,
+ * further callers wait for it instead of opening more channels. A pool that is not multiplexed,
+ * such as one of pipelined HTTP/1.1 connections, prefers idle channels and new channels, and only
+ * shares a busy channel once it is full.</p>
+ *
+ * <p>Channels are reused most recently released first. A background task closes idle channels
+ * that were not used for {@code idleTimeout} milliseconds, never going below {@code minIdle}, and
+ * channels that are older than {@code maxLifetime} milliseconds. The same task opens new channels
+ * whenever fewer than {@code minIdle} channels are idle.</p>
+ *
+ * <p>Channels the server is about to close are never reused: see {@link #retire(Channel)} and
+ * {@link #keepAlive(Channel, long)}.</p>
+ */
+final class HttpChannelPool {
+
+  /**
+   * The number of requests a channel can carry at once. Channels without it carry one request.
+   */
+  static final AttributeKey<Integer> MAX_CONCURRENCY = AttributeKey.valueOf("fauna-pool-max-concurrency");
+
+  private static final long EVICTION_INTERVAL_MS = 1_000;
+  private static final long KEEP_ALIVE_MARGIN_MS = 1_000;
+
+  private static final AttributeKey<Long> CREATED_AT = AttributeKey.valueOf("fauna-pool-created-at");
+  private static final AttributeKey<Long> RELEASED_AT = AttributeKey.valueOf("fauna-pool-released-at");
+  private static final AttributeKey<Integer> IN_FLIGHT = AttributeKey.valueOf("fauna-pool-in-flight");
+  private static final AttributeKey<Boolean> RETIRED = AttributeKey.valueOf("fauna-pool-retired");
+  private static final AttributeKey<Long> KEEP_ALIVE_UNTIL = AttributeKey.valueOf("fauna-pool-keep-alive-until");
+
+  private final Supplier<CompletableFuture<Channel>> connector;
+  private final EventExecutorGroup executor;
+  private final boolean multiplexed;
+  private final int maxConnections;
+  private final int maxPendingAcquires;
+  private final long acquireTimeout;
+  private final int minIdle;
+  private final int maxIdle;
+  private final long idleTimeoutNanos;
+  private final long maxLifetimeNanos;
+
+  private final Deque<Channel> available = new ArrayDeque<>();
+  private final Deque<PendingAcquire> pending = new ArrayDeque<>();
+  private final ScheduledFuture<?> evictionTask;
+
+  private int open = 0;
+  private int connecting = 0;
+  private int lastConcurrency;
+  private boolean closed = false;
+
+  /**
+   * @param connector opens a new channel to the endpoint
+   * @param executor the executor used to schedule acquire timeouts and idle eviction
+   * @param multiplexed whether channels are expected to carry several requests at once
+   * @param maxConnections maximum number of open channels
+   * @param maxPendingAcquires maximum number of callers waiting for a channel
+   * @param acquireTimeout timeout in milliseconds to wait for a channel, <code>-1</code> to ignore it
+   * @param minIdle number of idle channels kept open regardless of the idle timeout
+   * @param maxIdle maximum number of idle channels, extra channels are closed when released
+   * @param idleTimeout timeout in milliseconds after which an idle channel is closed, <code>-1</code> to ignore it
+   * @param maxLifetime time in milliseconds after which a channel is retired, <code>-1</code> to ignore it
+   */
+  HttpChannelPool(Supplier<CompletableFuture<Channel>> connector, EventExecutorGroup executor, boolean multiplexed,
+                  int maxConnections, int maxPendingAcquires, long acquireTimeout,
+                  int minIdle, int maxIdle, long idleTimeout, long maxLifetime) {
+    if (maxConnections < 1)
+      throw new IllegalArgumentException("maxConnections must be at least 1");
+    if (maxPendingAcquires < 0)
+      throw new IllegalArgumentException("maxPendingAcquires must not be negative");
+    if (minIdle < 0 || maxIdle < minIdle)
+      throw new IllegalArgumentException("Invalid idle bounds: minIdle=" + minIdle + ", maxIdle=" + maxIdle);
+
+    this.connector = connector;
+    this.executor = executor;
+    this.multiplexed = multiplexed;
+    this.lastConcurrency = multiplexed ? Integer.MAX_VALUE : 1;
+    this.maxConnections = maxConnections;
+    this.maxPendingAcquires = maxPendingAcquires;
+    this.acquireTimeout = acquireTimeout;
+    this.minIdle = minIdle;
+    this.maxIdle = maxIdle;
+    this.idleTimeoutNanos = idleTimeout > 0 ? TimeUnit.MILLISECONDS.toNanos(idleTimeout) : -1;
+    this.maxLifetimeNanos = maxLifetime > 0 ? TimeUnit.MILLISECONDS.toNanos(maxLifetime) : -1;
+
+    if (idleTimeoutNanos > 0 || maxLifetimeNanos > 0 || minIdle > 0) {
+      this.evictionTask = executor.scheduleWithFixedDelay(
+        this::maintain, EVICTION_INTERVAL_MS, EVICTION_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    } else {
+      this.evictionTask = null;
+    }
+  }
+
+  /**
+   * Marks a channel as no longer reusable, for instance because the server announced it will close it.
+   * The channel is closed once released by every caller.
+   */
+  static void retire(Channel channel) {
+    channel.attr(RETIRED).set(true);
+  }
+
+  /**
+   * Records how long the server keeps a channel open without traffic. The channel is not reused
+   * once that time has passed.
+   *
+   * @param timeout the server keep-alive timeout in milliseconds
+   */
+  static void keepAlive(Channel channel, long timeout) {
+    long margin = Math.min(timeout / 2, KEEP_ALIVE_MARGIN_MS);
+    channel.attr(KEEP_ALIVE_UNTIL).set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout - margin));
+  }
+
+  /**
+   * Acquires a channel from the pool, opening a new one if none is available and the pool is not full.
+   * The channel must be given back with {@link #release(Channel)} once the caller is done with it.
+   *
+   * @return a {@link CompletableFuture} completed with the acquired channel
+   */
+  CompletableFuture<Channel> acquire() {
+    return acquire(false);
+  }
+
+  /**
+   * Acquires a channel from the pool.
+   *
+   * @param fresh whether to open a new channel rather than reuse an available one, unless the pool is full
+   * @return a {@link CompletableFuture} completed with the acquired channel
+   */
+  CompletableFuture<Channel> acquire(boolean fresh) {
+    CompletableFuture<Channel> promise = new CompletableFuture<>();
+    List<Channel> stale = new ArrayList<>();
+    Channel channel;
+    boolean connect = false;
+
+    synchronized (this) {
+      if (closed) {
+        promise.completeExceptionally(new IllegalStateException("Client already closed"));
+        return promise;
+      }
+
+      long now = System.nanoTime();
+      while ((channel = available.peekFirst()) != null && !isUsable(channel, now)) {
+        available.pollFirst();
+        if (inFlight(channel) == 0) {
+          stale.add(channel);
+        }
+      }
+
+      if (channel != null && fresh && open < maxConnections) {
+        channel = null;
+      } else if (channel != null && !multiplexed && inFlight(channel) > 0) {
+        Channel idle = firstIdle(now);
+        if (idle != null) {
+          channel = idle;
+        } else if (open < maxConnections) {
+          channel = null;
+        }
+      }
+
+      if (channel != null) {
+        take(channel);
+      } else if (open < maxConnections && canConnect()) {
+        open++;
+        connecting++;
+        connect = true;
+      } else if (pending.size() < maxPendingAcquires) {
+        pending.addLast(new PendingAcquire(promise));
+      } else {
+        promise.completeExceptionally(new IllegalStateException("Too many outstanding acquire operations"));
+      }
+    }
+
+    closeAll(stale);
+
+    if (channel != null) {
+      handOver(channel, promise);
+    } else if (connect) {
+      connect(promise);
+    }
+
+    return promise;
+  }
+
+  /**
+   * Gives a channel back to the pool. The channel is handed to the oldest waiting caller, kept
+   * available, or closed if it is no longer usable or the pool already holds {@code maxIdle} idle
+   * channels.
+   *
+   * @param channel a channel previously obtained from {@link #acquire()}
+   */
+  void release(Channel channel) {
+    PendingAcquire waiter = null;
+    boolean close = false;
+
+    synchronized (this) {
+      long now = System.nanoTime();
+      int inFlight = inFlight(channel) - 1;
+      channel.attr(IN_FLIGHT).set(inFlight);
+
+      if (closed || !isUsable(channel, now)) {
+        available.remove(channel);
+        close = inFlight == 0;
+      } else if ((waiter = pending.pollFirst()) != null) {
+        channel.attr(IN_FLIGHT).set(inFlight + 1);
+      } else if (inFlight == 0) {
+        available.remove(channel);
+
+        if (idleCount() >= maxIdle) {
+          close = true;
+        } else {
+          channel.attr(RELEASED_AT).set(now);
+          available.addFirst(channel);
+        }
+      } else if (!available.contains(channel)) {
+        available.addFirst(channel);
+      }
+    }
+
+    if (close) {
+      channel.close();
+    } else if (waiter != null) {
+      waiter.cancelTimeout();
+      handOver(channel, waiter.promise);
+    }
+  }
+
+  /**
+   * Opens channels in the background until the pool holds {@code connections} idle channels, or is full.
+   *
+   * @param connections the number of idle channels wanted
+   * @return a {@link CompletableFuture} completed once every channel opened, or failed if any of them
+   * could not be opened
+   */
+  CompletableFuture<Void> warmUp(int connections) {
+    int count;
+
+    synchronized (this) {
+      if (closed) {
+        count = 0;
+      } else {
+        count = Math.min(connections - idleCount() - connecting, maxConnections - open);
+        count = Math.max(count, 0);
+        open += count;
+        connecting += count;
+      }
+    }
+
+    CompletableFuture<?>[] warming = new CompletableFuture<?>[count];
+
+    for (int i = 0; i < count; i++) {
+      CompletableFuture<Channel> promise = new CompletableFuture<>();
+      warming[i] = promise.thenAccept(this::release);
+      connect(promise);
+    }
+
+    return CompletableFuture.allOf(warming);
+  }
+
+  /**
+   * @return the number of open channels carrying at least one request
+   */
+  synchronized int active() {
+    return open - connecting - idleCount();
+  }
+
+  /**
+   * @return the number of open channels carrying no request
+   */
+  synchronized int idle() {
+    return idleCount();
+  }
+
+  /**
+   * @return the number of callers waiting for a channel
+   */
+  synchronized int pendingAcquires() {
+    return pending.size();
+  }
+
+  /**
+   * Closes every idle channel and fails all waiting callers. Channels still in use are closed as
+   * soon as they are released.
+   */
+  void close() {
+    List<Channel> channels = new ArrayList<>();
+    List<PendingAcquire> waiters;
+
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      for (Channel channel : available) {
+        if (inFlight(channel) == 0) {
+          channels.add(channel);
+        }
+      }
+      waiters = new ArrayList<>(pending);
+      available.clear();
+      pending.clear();
+    }
+
+    if (evictionTask != null) {
+      evictionTask.cancel(false);
+    }
+
+    for (PendingAcquire waiter : waiters) {
+      waiter.cancelTimeout();
+      waiter.promise.completeExceptionally(new IllegalStateException("Client already closed"));
+    }
+
+    closeAll(channels);
+  }
+
+  private void connect(CompletableFuture<Channel> promise) {
+    CompletableFuture<Channel> connection;
+
+    try {
+      connection = connector.get();
+    } catch (Throwable t) {
+      connection = new CompletableFuture<>();
+      connection.completeExceptionally(t);
+    }
+
+    connection.whenComplete((channel, error) -> {
+      if (error != null) {
+        synchronized (this) {
+          connecting--;
+        }
+
+        promise.completeExceptionally(error);
+        onSlotFreed();
+        return;
+      }
+
+      channel.attr(CREATED_AT).set(System.nanoTime());
+      channel.attr(IN_FLIGHT).set(1);
+      channel.closeFuture().addListener(f -> onClosed(channel));
+
+      List<PendingAcquire> waiters = new ArrayList<>();
+      PendingAcquire next = null;
+
+      synchronized (this) {
+        connecting--;
+        lastConcurrency = maxConcurrency(channel);
+
+        PendingAcquire waiter;
+        while (inFlight(channel) < lastConcurrency && (waiter = pending.pollFirst()) != null) {
+          take(channel);
+          waiters.add(waiter);
+        }
+
+        if (inFlight(channel) < lastConcurrency) {
+          available.addFirst(channel);
+        }
+
+        if (!closed && open < maxConnections && connecting == 0 && (next = pending.pollFirst()) != null) {
+          open++;
+          connecting++;
+        }
+      }
+
+      handOver(channel, promise);
+
+      for (PendingAcquire waiter : waiters) {
+        waiter.cancelTimeout();
+        handOver(channel, waiter.promise);
+      }
+
+      if (next != null) {
+        next.cancelTimeout();
+        connect(next.promise);
+      }
+    });
+  }
+
+  private void handOver(Channel channel, CompletableFuture<Channel> promise) {
+    if (!promise.complete(channel)) {
+      release(channel);
+    }
+  }
+
+  private void onClosed(Channel channel) {
+    synchronized (this) {
+      available.remove(channel);
+    }
+
+    onSlotFreed();
+  }
+
+  private void onSlotFreed() {
+    PendingAcquire waiter = null;
+
+    synchronized (this) {
+      open--;
+
+      if (!closed && open < maxConnections && canConnect()
+        && (waiter = pending.pollFirst()) != null) {
+        open++;
+        connecting++;
+      }
+    }
+
+    if (waiter != null) {
+      waiter.cancelTimeout();
+      connect(waiter.promise);
+    }
+  }
+
+  private void maintain() {
+    evict();
+
+    if (minIdle > 0) {
+      warmUp(minIdle);
+    }
+  }
+
+  private void evict() {
+    List<Channel> evicted = new ArrayList<>();
+
+    synchronized (this) {
+      long now = System.nanoTime();
+      int idle = idleCount();
+      Iterator<Channel> it = available.descendingIterator();
+
+      while (it.hasNext()) {
+        Channel channel = it.next();
+
+        if (inFlight(channel) > 0) {
+          continue;
+        }
+
+        if (!isUsable(channel, now) || (idle > minIdle && isIdleTooLong(channel, now))) {
+          it.remove();
+          evicted.add(channel);
+          idle--;
+        }
+      }
+    }
+
+    closeAll(evicted);
+  }
+
+  private boolean canConnect() {
+    return !multiplexed || connecting == 0 || lastConcurrency == 1;
+  }
+
+  private Channel firstIdle(long now) {
+    for (Channel channel : available) {
+      if (inFlight(channel) == 0 && isUsable(channel, now)) {
+        return channel;
+      }
+    }
+
+    return null;
+  }
+
+  private void take(Channel channel) {
+    int inFlight = inFlight(channel) + 1;
+    channel.attr(IN_FLIGHT).set(inFlight);
+
+    if (inFlight >= maxConcurrency(channel)) {
+      available.remove(channel);
+    }
+  }
+
+  private int idleCount() {
+    int count = 0;
+
+    for (Channel channel : available) {
+      if (inFlight(channel) == 0) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static int inFlight(Channel channel) {
+    Integer inFlight = channel.attr(IN_FLIGHT).get();
+    return inFlight == null ? 0 : inFlight;
+  }
+
+  private static int maxConcurrency(Channel channel) {
+    Integer concurrency = channel.attr(MAX_CONCURRENCY).get();
+    return concurrency == null ? 1 : Math.max(1, concurrency);
+  }
+
+  private boolean isUsable(Channel channel, long now) {
+    if (!channel.isActive() || channel.hasAttr(RETIRED)) {
+      return false;
+    }
+
+    Long keepAliveUntil = channel.attr(KEEP_ALIVE_UNTIL).get();
+    if (keepAliveUntil != null && now - keepAliveUntil >= 0) {
+      return false;
+    }
+
+    Long createdAt = channel.attr(CREATED_AT).get();
+    return maxLifetimeNanos <= 0 || createdAt == null || now - createdAt < maxLifetimeNanos;
+  }
+
+  private boolean isIdleTooLong(Channel channel, long now) {
+    Long releasedAt = channel.attr(RELEASED_AT).get();
+    return idleTimeoutNanos > 0 && releasedAt != null && now - releasedAt >= idleTimeoutNanos;
+  }
+
+  private void closeAll(List<Channel> channels) {
+    for (Channel channel : channels) {
+      try {
+        channel.close();
+      } catch (Throwable t) {}
+    }
+  }
+
+  private final class PendingAcquire {
+
+    final CompletableFuture<Channel> promise;
+    final ScheduledFuture<?> timeout;
+
+    PendingAcquire(CompletableFuture<Channel> promise) {
+      this.promise = promise;
+
+      if (acquireTimeout > 0) {
+        this.timeout = executor.schedule(this::expire, acquireTimeout, TimeUnit.MILLISECONDS);
+      } else {
+        this.timeout = null;
+      }
+    }
+
+    void cancelTimeout() {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+    }
+
+    private void expire() {
+      boolean removed;
+
+      synchronized (HttpChannelPool.this) {
+        removed = pending.remove(this);
+      }
+
+      if (removed) {
+        promise.completeExceptionally(
+          new TimeoutException("Timed out after " + acquireTimeout + "ms waiting for a connection"));
+      }
+    }
+  }
+
+}
@@ -1,31 +1,55 @@
 package com.faunadb.common.http;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslProvider;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.AsciiString;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.Timeout;
 import io.netty.util.concurrent.DefaultThreadFactory;
-import io.netty.util.internal.SocketUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.SocketAddress;
 import java.net.URL;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 import static io.netty.handler.codec.http.HttpMethod.PATCH;
 import static io.netty.handler.codec.http.HttpMethod.POST;
@@ -41,16 +65,486 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
   private static final int WORKER_TIMEOUT = 15_000;
   private static final int MAX_CONTENT_LENGTH = 5 * 1000 * 1000;
 
+  private static final int DEFAULT_MAX_CONNECTIONS = 100;
+  private static final int DEFAULT_MAX_PENDING_ACQUIRES = 10_000;
+  private static final int DEFAULT_ACQUIRE_TIMEOUT_MS = 10_000;
+  private static final int DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+  private static final int DEFAULT_MAX_STREAMS_PER_CONNECTION = 100;
+  private static final int DEFAULT_PIPELINING_DEPTH = 1;
+  private static final int DEFAULT_IDLE_PROBE_INTERVAL_MS = 30_000;
+  private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+  private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+  private static final AsciiString ACCEPT_ENCODING = AsciiString.cached("gzip, deflate");
+  private static final String DEFAULT_METRICS_PREFIX = "fauna";
+  private static final AsciiString USER_AGENT = AsciiString.cached("Fauna Netty Http Client");
+  private static final AttributeKey<Boolean> USED = AttributeKey.valueOf("fauna-http2-used");
+
+  /**
+   * The HTTP protocol version used to talk to the endpoint.
+   */
+  public enum Protocol {
+    /**
+     * One request per connection at a time, unless pipelining is enabled with
+     * {@link Builder#withPipeliningDepth(int)}.
+     */
+    HTTP_1_1,
+
+    /**
+     * Concurrent requests multiplexed as streams over a few connections. Negotiated through ALPN,
+     * falling back to HTTP/1.1 when the endpoint does not support it or is not secured with TLS.
+     */
+    HTTP_2
+  }
+
+  /**
+   * Returns a new {@link Builder} instance.
+   *
+   * @return a new {@link Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder for the {@link HttpClient} instance. Use the {@link HttpClient#builder} method to create
+   * an instance of the {@link Builder} class.
+   */
+  public static class Builder {
+
+    private URL endpoint;
+    private int connectionTimeout = -1;
+    private int requestTimeout = -1;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxPendingAcquires = DEFAULT_MAX_PENDING_ACQUIRES;
+    private int acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT_MS;
+    private int minIdle = 0;
+    private int maxIdle = -1;
+    private int idleTimeout = DEFAULT_IDLE_TIMEOUT_MS;
+    private int maxLifetime = -1;
+    private int idleProbeInterval = DEFAULT_IDLE_PROBE_INTERVAL_MS;
+    private Protocol protocol = Protocol.HTTP_1_1;
+    private int maxStreamsPerConnection = DEFAULT_MAX_STREAMS_PER_CONNECTION;
+    private int pipeliningDepth = DEFAULT_PIPELINING_DEPTH;
+    private HttpTransport transport;
+    private EventLoopGroup eventLoopGroup;
+    private int ioThreads = 0;
+    private SslProvider sslProvider;
+    private long sessionCacheSize = -1;
+    private long sessionTimeout = -1;
+    private int warmUpConnections = 0;
+    private boolean compression = false;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    private MetricRegistry registry;
+    private String metricsPrefix = DEFAULT_METRICS_PREFIX;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the base endpoint URL for the client requests.
+     *
+     * @param endpoint the base endpoint URL
+     * @return this {@link Builder} object
+     */
+    public Builder withEndpoint(URL endpoint) {
+      this.endpoint = endpoint;
+      return this;
+    }
+
+    /**
+     * Sets the timeout to establish a new connection.
+     *
+     * @param connectionTimeout timeout in milliseconds, <code>-1</code> to ignore it
+     * @return this {@link Builder} object
+     */
+    public Builder withConnectionTimeout(int connectionTimeout) {
+      this.connectionTimeout = connectionTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the timeout to wait for a response once a request has been written.
+     *
+     * @param requestTimeout timeout in milliseconds, <code>-1</code> to ignore it
+     * @return this {@link Builder} object
+     */
+    public Builder withRequestTimeout(int requestTimeout) {
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of connections open to the endpoint at any time. Defaults to 100.
+     *
+     * @param maxConnections the maximum number of connections
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxConnections(int maxConnections) {
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests waiting for a connection when all connections are in use.
+     * Requests beyond this limit fail immediately. Defaults to 10000.
+     *
+     * @param maxPendingAcquires the maximum number of waiting requests
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxPendingAcquires(int maxPendingAcquires) {
+      this.maxPendingAcquires = maxPendingAcquires;
+      return this;
+    }
+
+    /**
+     * Sets how long a request waits for a connection when all connections are in use. Defaults to 10 seconds.
+     *
+     * @param acquireTimeout timeout in milliseconds, <code>-1</code> to ignore it
+     * @return this {@link Builder} object
+     */
+    public Builder withAcquireTimeout(int acquireTimeout) {
+      this.acquireTimeout = acquireTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the number of idle connections that are never closed due to the idle timeout. Connections
+     * are opened in the background whenever fewer are idle. Defaults to 0.
+     *
+     * @param minIdle the minimum number of idle connections
+     * @return this {@link Builder} object
+     */
+    public Builder withMinIdle(int minIdle) {
+      this.minIdle = minIdle;
+      return this;
+    }
+
+    /**
+     * Sets the number of connections opened in the background as soon as the client is built, so the
+     * first requests do not pay the connect and TLS handshake latency. Use {@link HttpClient#warmedUp()}
+     * to wait for them. The client always opens at least the minimum number of idle connections.
+     * Defaults to 0.
+     *
+     * @param warmUpConnections the number of connections to open at startup
+     * @return this {@link Builder} object
+     */
+    public Builder withWarmUpConnections(int warmUpConnections) {
+      this.warmUpConnections = warmUpConnections;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of idle connections. Connections released while the pool is already
+     * holding this many idle connections are closed. Defaults to the maximum number of connections.
+     *
+     * @param maxIdle the maximum number of idle connections
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxIdle(int maxIdle) {
+      this.maxIdle = maxIdle;
+      return this;
+    }
+
+    /**
+     * Sets how long a connection may stay idle before it is closed. Defaults to 60 seconds.
+     *
+     * @param idleTimeout timeout in milliseconds, <code>-1</code> to ignore it
+     * @return this {@link Builder} object
+     */
+    public Builder withIdleTimeout(int idleTimeout) {
+      this.idleTimeout = idleTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the maximum lifetime of a connection. Older connections are closed once they become idle.
+     *
+     * @param maxLifetime lifetime in milliseconds, <code>-1</code> to ignore it
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxLifetime(int maxLifetime) {
+      this.maxLifetime = maxLifetime;
+      return this;
+    }
+
+    /**
+     * Sets how long a connection may go without traffic before TCP keep-alive probes check that the
+     * endpoint is still reachable, so that connections silently dropped by the network are closed
+     * before they are reused. Only supported by the {@link HttpTransport#EPOLL} transport, other
+     * transports use the system defaults. Defaults to 30 seconds.
+     *
+     * @param idleProbeInterval interval in milliseconds, <code>-1</code> to use the system defaults
+     * @return this {@link Builder} object
+     */
+    public Builder withIdleProbeInterval(int idleProbeInterval) {
+      this.idleProbeInterval = idleProbeInterval;
+      return this;
+    }
+
+    /**
+     * Sets the HTTP protocol version to use. Defaults to {@link Protocol#HTTP_1_1}.
+     *
+     * @param protocol the {@link Protocol} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withProtocol(Protocol protocol) {
+      this.protocol = protocol;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests carried by a single HTTP/2 connection.
+     * Ignored for HTTP/1.1 connections. Defaults to 100. A connection never carries more requests
+     * than its server allows with <code>SETTINGS_MAX_CONCURRENT_STREAMS</code>.
+     *
+     * @param maxStreamsPerConnection the maximum number of concurrent streams per connection
+     * @return this {@link Builder} object
+     */
+    public Builder withMaxStreamsPerConnection(int maxStreamsPerConnection) {
+      this.maxStreamsPerConnection = maxStreamsPerConnection;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent over a single HTTP/1.1 connection before the
+     * response to the first one is received. Requests are only pipelined once every connection
+     * is busy and no more connections can be opened, since a slow response delays all the
+     * responses queued behind it. Ignored for HTTP/2 connections. Defaults to 1, no pipelining.
+     *
+     * @param pipeliningDepth the maximum number of in flight requests per connection
+     * @return this {@link Builder} object
+     */
+    public Builder withPipeliningDepth(int pipeliningDepth) {
+      this.pipeliningDepth = pipeliningDepth;
+      return this;
+    }
+
+    /**
+     * Sets the socket transport to use. Defaults to the best transport available on the platform,
+     * see {@link HttpTransport#best()}.
+     *
+     * @param transport the {@link HttpTransport} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withTransport(HttpTransport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sets the event loop group performing the client I/O, for instance {@link SharedEventLoopGroup#get()},
+     * so that several clients share the same threads. The client does not shut the group down when closed.
+     * The transport is derived from the group. Defaults to a group owned by the client.
+     *
+     * @param eventLoopGroup the {@link EventLoopGroup} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withEventLoopGroup(EventLoopGroup eventLoopGroup) {
+      this.eventLoopGroup = eventLoopGroup;
+      return this;
+    }
+
+    /**
+     * Sets the number of I/O threads of the event loop group owned by the client. Ignored when an
+     * event loop group is provided. Defaults to twice the number of available processors.
+     *
+     * @param ioThreads the number of I/O threads, <code>0</code> for the default
+     * @return this {@link Builder} object
+     */
+    public Builder withIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+      return this;
+    }
+
+    /**
+     * Sets the TLS implementation to use. Defaults to {@link SslProvider#OPENSSL} when the
+     * netty-tcnative native library is on the classpath, otherwise to {@link SslProvider#JDK}.
+     * An OpenSSL provider falls back to the JDK one when the native library can not be loaded.
+     *
+     * @param sslProvider the {@link SslProvider} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withSslProvider(SslProvider sslProvider) {
+      this.sslProvider = sslProvider;
+      return this;
+    }
+
+    /**
+     * Sets the number of TLS sessions cached for resumption when reconnecting. Defaults to the
+     * TLS provider's default.
+     *
+     * @param sessionCacheSize the maximum number of cached sessions
+     * @return this {@link Builder} object
+     */
+    public Builder withSessionCacheSize(long sessionCacheSize) {
+      this.sessionCacheSize = sessionCacheSize;
+      return this;
+    }
+
+    /**
+     * Sets how long a cached TLS session can be resumed. Defaults to the TLS provider's default.
+     *
+     * @param sessionTimeout timeout in seconds
+     * @return this {@link Builder} object
+     */
+    public Builder withSessionTimeout(long sessionTimeout) {
+      this.sessionTimeout = sessionTimeout;
+      return this;
+    }
+
+    /**
+     * Enables gzip compression. Responses are requested with <code>Accept-Encoding: gzip, deflate</code>
+     * and request bodies of at least the compression threshold are sent gzip encoded. Defaults to false.
+     *
+     * @param compression whether to compress requests and accept compressed responses
+     * @return this {@link Builder} object
+     */
+    public Builder withCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets the smallest request body, in bytes, that is compressed when compression is enabled.
+     * Defaults to 1024.
+     *
+     * @param compressionThreshold the minimum body size to compress
+     * @return this {@link Builder} object
+     */
+    public Builder withCompressionThreshold(int compressionThreshold) {
+      this.compressionThreshold = compressionThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the gzip compression level for request bodies, from 1 (fastest) to 9 (smallest).
+     * Defaults to 6.
+     *
+     * @param compressionLevel the compression level
+     * @return this {@link Builder} object
+     */
+    public Builder withCompressionLevel(int compressionLevel) {
+      this.compressionLevel = compressionLevel;
+      return this;
+    }
+
+    /**
+     * Sets a {@link MetricRegistry} used to track transport level statistics.
+     *
+     * @param registry the {@link MetricRegistry} instance
+     * @return this {@link Builder} object
+     */
+    public Builder withMetrics(MetricRegistry registry) {
+      return withMetrics(registry, DEFAULT_METRICS_PREFIX);
+    }
+
+    /**
+     * Sets a {@link MetricRegistry} used to track transport level statistics, naming them with the
+     * given prefix instead of <code>fauna</code>:
+     * <ul>
+     *   <li><code>&lt;prefix&gt;-pool.&lt;host:port&gt;.active</code>, <code>.idle</code> and
+     *   <code>.pending</code> gauges of the connections in use, idle, and of the requests waiting
+     *   for one;</li>
+     *   <li><code>&lt;prefix&gt;-pool-wait</code>, <code>&lt;prefix&gt;-connect</code>,
+     *   <code>&lt;prefix&gt;-tls-handshake</code> and <code>&lt;prefix&gt;-time-to-first-byte</code>
+     *   timers;</li>
+     *   <li><code>&lt;prefix&gt;-request-bytes</code> and <code>&lt;prefix&gt;-response-bytes</code>
+     *   histograms of the body sizes, as sent and as decoded.</li>
+     * </ul>
+     *
+     * @param registry the {@link MetricRegistry} instance
+     * @param prefix the prefix of the metric names
+     * @return this {@link Builder} object
+     */
+    public Builder withMetrics(MetricRegistry registry, String prefix) {
+      this.registry = registry;
+      this.metricsPrefix = prefix;
+      return this;
+    }
+
+    /**
+     * @return a newly constructed {@link HttpClient} with its configuration based on
+     * the settings of the {@link Builder} instance.
+     */
+    public HttpClient build() {
+      if (endpoint == null) {
+        throw new IllegalArgumentException("Invalid endpoint: no endpoint provided");
+      }
+
+      if (protocol == null) {
+        throw new IllegalArgumentException("Invalid protocol: no protocol provided");
+      }
+
+      if (maxStreamsPerConnection < 1) {
+        throw new IllegalArgumentException("maxStreamsPerConnection must be at least 1");
+      }
+
+      if (pipeliningDepth < 1) {
+        throw new IllegalArgumentException("pipeliningDepth must be at least 1");
+      }
+
+      if (compressionLevel < 1 || compressionLevel > 9) {
+        throw new IllegalArgumentException("compressionLevel must be between 1 and 9");
+      }
+
+      if (registry != null && (metricsPrefix == null || metricsPrefix.isEmpty())) {
+        throw new IllegalArgumentException("Invalid metrics prefix: no prefix provided");
+      }
+
+      if (transport != null && !transport.isAvailable()) {
+        throw new IllegalArgumentException("Invalid transport: " + transport + " is not available on this platform");
+      }
+
+      if (ioThreads < 0) {
+        throw new IllegalArgumentException("ioThreads must not be negative");
+      }
+
+      if (eventLoopGroup != null) {
+        if (eventLoopGroup.isShuttingDown()) {
+          throw new IllegalArgumentException("Invalid event loop group: already shut down");
+        }
+
+        HttpTransport groupTransport = HttpTransport.of(eventLoopGroup);
+        if (transport != null && transport != groupTransport) {
+          throw new IllegalArgumentException(
+            "Invalid transport: " + transport + " does not match the event loop group transport " + groupTransport);
+        }
+      }
+
+      return new HttpClient(this);
+    }
+  }
+
+  private final Logger log = LoggerFactory.getLogger(getClass());
+
   private final int port;
   private final String host;
+  private final AsciiString hostHeader;
   private final int connectionTimeout;
   private final int requestTimeout;
+  private final int idleProbeInterval;
   private final boolean secured;
+  private final boolean http2;
+  private final int maxStreamsPerConnection;
+  private final int pipeliningDepth;
+  private final SslProvider sslProvider;
   private final SslContext sslContext;
+  private final HttpTransport transport;
+  private final boolean compression;
+  private final int compressionThreshold;
+  private final int compressionLevel;
+  private final Histogram requestCompressionRatio;
+  private final Histogram responseCompressionRatio;
+  private final TransportMetrics metrics;
 
   private Bootstrap bootstrap;
-  private ConcurrentLinkedQueue<Channel> pool = new ConcurrentLinkedQueue<>();
+  private HostConnector hostConnector;
+  private HttpChannelPool pool;
   private EventLoopGroup worker;
+  private boolean ownsWorker;
+  private volatile boolean closed = false;
+  private CompletableFuture<Void> warmedUp;
 
   /**
    * @param endpoint the base endpoint URL for this client requests
@@ -66,44 +560,122 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
    * @param requestTimeout timeout in milliseconds, <code>-1</code> to ignore it
    */
   public HttpClient(URL endpoint, int connectionTimeout, int requestTimeout) {
-    this.host = extractHost(endpoint);
-    this.secured = endpoint.getProtocol().equalsIgnoreCase("https");
-    this.port = extractPort(endpoint);
-    this.sslContext = initSslContext();
+    this(builder()
+      .withEndpoint(endpoint)
+      .withConnectionTimeout(connectionTimeout)
+      .withRequestTimeout(requestTimeout));
+  }
+
+  private HttpClient(Builder builder) {
+    this.host = extractHost(builder.endpoint);
+    this.hostHeader = new AsciiString(host);
+    this.secured = builder.endpoint.getProtocol().equalsIgnoreCase("https");
+    this.port = extractPort(builder.endpoint);
+    this.http2 = secured && builder.protocol == Protocol.HTTP_2;
+    this.maxStreamsPerConnection = builder.maxStreamsPerConnection;
+    this.pipeliningDepth = builder.pipeliningDepth;
+    this.sslProvider = secured ? sslProvider(builder.sslProvider) : null;
+    this.sslContext = secured ? newSslContext(sslProvider, http2, builder.sessionCacheSize, builder.sessionTimeout) : null;
+    this.transport = builder.eventLoopGroup != null ? HttpTransport.of(builder.eventLoopGroup)
+      : builder.transport != null ? builder.transport : HttpTransport.best();
 
-    this.connectionTimeout = connectionTimeout;
-    this.requestTimeout = requestTimeout;
+    this.connectionTimeout = builder.connectionTimeout;
+    this.requestTimeout = builder.requestTimeout;
+    this.idleProbeInterval = builder.idleProbeInterval;
+
+    this.compression = builder.compression;
+    this.compressionThreshold = builder.compressionThreshold;
+    this.compressionLevel = builder.compressionLevel;
+    this.requestCompressionRatio = compression && builder.registry != null
+      ? builder.registry.histogram(builder.metricsPrefix + "-request-compression-ratio") : null;
+    this.responseCompressionRatio = compression && builder.registry != null
+      ? builder.registry.histogram(builder.metricsPrefix + "-response-compression-ratio") : null;
+    this.metrics = builder.registry != null ? new TransportMetrics(builder.registry, builder.metricsPrefix) : null;
+
+    initBoot(builder.eventLoopGroup, builder.ioThreads);
+
+    int maxIdle = builder.maxIdle < 0 ? builder.maxConnections : builder.maxIdle;
+    this.pool = new HttpChannelPool(this::connect, worker, http2,
+      builder.maxConnections, builder.maxPendingAcquires, builder.acquireTimeout,
+      builder.minIdle, maxIdle, builder.idleTimeout, builder.maxLifetime);
+
+    if (metrics != null) {
+      metrics.registerPool(host, port, pool);
+    }
 
-    initBoot();
+    this.warmedUp = pool.warmUp(Math.max(builder.warmUpConnections, builder.minIdle));
   }
 
-  private void initBoot() {
-    worker = initWorker();
+  private void initBoot(EventLoopGroup eventLoopGroup, int ioThreads) {
+    ownsWorker = eventLoopGroup == null;
+    worker = ownsWorker ? initWorker(ioThreads) : eventLoopGroup;
+
+    hostConnector = new HostConnector(host, port, worker.next(), transport);
 
     bootstrap = new Bootstrap();
     bootstrap.group(worker);
-    bootstrap.channel(NioSocketChannel.class);
+    bootstrap.channel(transport.socketChannelClass());
     bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
 
     if (connectionTimeout > 0) {
       bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeout);
     }
+
+    if (idleProbeInterval > 0 && !transport.configureIdleProbes(bootstrap, idleProbeInterval)) {
+      log.debug("{} transport does not support tuning keep-alive probes, using system defaults", transport);
+    }
   }
 
-  private NioEventLoopGroup initWorker() {
+  private EventLoopGroup initWorker(int ioThreads) {
+    log.debug("Using {} transport for {}:{}", transport, host, port);
+
     DefaultThreadFactory defaultThreadFactory = new DefaultThreadFactory("fauna-http-client", true);
-    return new NioEventLoopGroup(0, defaultThreadFactory);
+    return transport.newEventLoopGroup(ioThreads, defaultThreadFactory);
   }
 
-  private SslContext initSslContext() {
-    if (!secured) {
-      return null;
+  /**
+   * Resolves the TLS implementation to use, falling back to the JDK when OpenSSL is requested
+   * but its native library can not be loaded.
+   */
+  static SslProvider sslProvider(SslProvider requested) {
+    if (requested == SslProvider.JDK) {
+      return SslProvider.JDK;
+    }
+
+    if (OpenSsl.isAvailable()) {
+      return requested != null ? requested : SslProvider.OPENSSL;
+    }
+
+    if (requested != null) {
+      LoggerFactory.getLogger(HttpClient.class)
+        .warn("{} TLS provider is not available, falling back to JDK", requested, OpenSsl.unavailabilityCause());
     }
 
+    return SslProvider.JDK;
+  }
+
+  static SslContext newSslContext(SslProvider provider, boolean http2, long sessionCacheSize, long sessionTimeout) {
     SslContextBuilder builder = SslContextBuilder.forClient();
-    builder.sslProvider(SslProvider.JDK);
+    builder.sslProvider(provider);
     builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
 
+    if (sessionCacheSize >= 0) {
+      builder.sessionCacheSize(sessionCacheSize);
+    }
+
+    if (sessionTimeout >= 0) {
+      builder.sessionTimeout(sessionTimeout);
+    }
+
+    if (http2) {
+      builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+        ApplicationProtocolConfig.Protocol.ALPN,
+        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+        ApplicationProtocolNames.HTTP_2,
+        ApplicationProtocolNames.HTTP_1_1));
+    }
+
     try {
       return builder.build();
     } catch (SSLException e) {
@@ -130,30 +702,55 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
   }
 
   /**
-   * Frees any resources held by the client. Also closes the underlying worker
+   * Frees any resources held by the client. Also closes the underlying worker, unless it was
+   * provided through {@link Builder#withEventLoopGroup(EventLoopGroup)}.
    *
    * @throws IOException
    */
   @Override
   protected void deallocate() {
     if (!isClosed()) {
-      if (worker != null) {
+      closed = true;
+      hostConnector.close();
+
+      if (worker != null && ownsWorker) {
         worker.shutdownGracefully(WORKER_QUIET_PERIOD, WORKER_TIMEOUT, TimeUnit.MILLISECONDS);
       }
     }
-    silentlyClose();
-  }
+    pool.close();
 
-  private void silentlyClose() {
-    for (Channel channel : pool) {
-      try {
-        if (channel.isActive()) {
-          channel.close();
-        }
-      } catch (Throwable t) {}
+    if (metrics != null) {
+      metrics.unregisterPool();
     }
+  }
+
+  /**
+   * Returns a future completed once the connections requested through
+   * {@link Builder#withWarmUpConnections(int)} and {@link Builder#withMinIdle(int)} are open.
+   * The future fails if any of them could not be opened.
+   *
+   * @return a {@link CompletableFuture} completed when the client is warm
+   */
+  public CompletableFuture<Void> warmedUp() {
+    return warmedUp;
+  }
+
+  /**
+   * Returns the socket transport this client performs I/O with.
+   *
+   * @return the active {@link HttpTransport}
+   */
+  public HttpTransport transport() {
+    return transport;
+  }
 
-    pool.clear();
+  /**
+   * Returns the TLS implementation this client secures connections with.
+   *
+   * @return the active {@link SslProvider}, or <code>null</code> if the endpoint is not secured
+   */
+  public SslProvider sslProvider() {
+    return sslProvider;
   }
 
   /**
@@ -163,7 +760,7 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
    * @see #close()
    */
   public boolean isClosed() {
-    return worker == null || worker.isShuttingDown() || worker.isTerminated();
+    return closed || worker == null || worker.isShuttingDown() || worker.isTerminated();
   }
 
   /**
@@ -175,59 +772,376 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
    * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
    */
   public CompletableFuture<FullHttpResponse> sendRequest(FullHttpRequest req) {
+    return sendRequest(req, (Duration) null);
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} that must complete within the given time.
+   *
+   * <p>When the time runs out, or when the returned future is cancelled, the request is aborted: it is
+   * not sent if it still waits for a connection, its HTTP/2 stream is reset, and its HTTP/1.1 connection
+   * is closed, or only retired from the pool if other pipelined requests still wait on it.</p>
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link FullHttpResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<FullHttpResponse> sendRequest(FullHttpRequest req, Duration timeout) {
+    return sendRequest(req, timeout, null);
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} like {@link #sendRequest(FullHttpRequest, Duration)}, reporting its
+   * progress to a listener.
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @param listener the {@link HttpExchangeListener} notified of the request progress, or <code>null</code>
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link FullHttpResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<FullHttpResponse> sendRequest(FullHttpRequest req, Duration timeout,
+                                                         HttpExchangeListener listener) {
+    return sendRequest(req, timeout, listener, isIdempotent(req.method()));
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} like {@link #sendRequest(FullHttpRequest, Duration, HttpExchangeListener)},
+   * telling whether it can be applied twice.
+   *
+   * <p>A request lost because a reused connection closed before responding is sent again on a new
+   * connection if it was never written, or if it is idempotent. Otherwise it may have been processed, and
+   * fails. Requests sent without this flag are idempotent if their method is safe, such as
+   * <code>GET</code>.</p>
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @param listener the {@link HttpExchangeListener} notified of the request progress, or <code>null</code>
+   * @param idempotent whether the request can be sent twice without applying its effects twice
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link FullHttpResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<FullHttpResponse> sendRequest(FullHttpRequest req, Duration timeout,
+                                                         HttpExchangeListener listener, boolean idempotent) {
+    return sendRequest(req, ch -> new FullHttpResponseReader(ch.alloc(), MAX_CONTENT_LENGTH), timeout, listener,
+      idempotent);
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} whose response body is JSON. The body is parsed as it is received,
+   * without buffering it first, and is not subject to any size limit.
+   *
+   * @param req {@link FullHttpRequest}
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link HttpJsonResponse}
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<HttpJsonResponse> sendJsonRequest(FullHttpRequest req) {
+    return sendJsonRequest(req, null);
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} whose response body is JSON, and that must complete within the
+   * given time. See {@link #sendRequest(FullHttpRequest, Duration)} for how the request is aborted.
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link HttpJsonResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<HttpJsonResponse> sendJsonRequest(FullHttpRequest req, Duration timeout) {
+    return sendJsonRequest(req, timeout, null);
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} whose response body is JSON like
+   * {@link #sendJsonRequest(FullHttpRequest, Duration)}, reporting its progress to a listener.
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @param listener the {@link HttpExchangeListener} notified of the request progress, or <code>null</code>
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link HttpJsonResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<HttpJsonResponse> sendJsonRequest(FullHttpRequest req, Duration timeout,
+                                                             HttpExchangeListener listener) {
+    return sendJsonRequest(req, timeout, listener, isIdempotent(req.method()));
+  }
+
+  /**
+   * Sends a {@link FullHttpRequest} whose response body is JSON like
+   * {@link #sendJsonRequest(FullHttpRequest, Duration, HttpExchangeListener)}, telling whether it can be
+   * applied twice. See {@link #sendRequest(FullHttpRequest, Duration, HttpExchangeListener, boolean)} for
+   * when the request is sent again.
+   *
+   * @param req {@link FullHttpRequest}
+   * @param timeout the time allowed for the request, or <code>null</code> for no deadline
+   * @param listener the {@link HttpExchangeListener} notified of the request progress, or <code>null</code>
+   * @param idempotent whether the request can be sent twice without applying its effects twice
+   * @return {@link CompletableFuture} containing the asynchronous computation of the
+   * {@link HttpJsonResponse}, failed with a {@link TimeoutException} if the deadline is exceeded
+   * @throws IllegalStateException if the the client is already closed {@link #isClosed()}
+   */
+  public CompletableFuture<HttpJsonResponse> sendJsonRequest(FullHttpRequest req, Duration timeout,
+                                                             HttpExchangeListener listener, boolean idempotent) {
+    return sendRequest(req, ch -> new HttpJsonResponseReader(), timeout, listener, idempotent);
+  }
+
+  private static boolean isIdempotent(HttpMethod method) {
+    return method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD) || method.equals(HttpMethod.OPTIONS);
+  }
+
+  private <T> CompletableFuture<T> sendRequest(FullHttpRequest req, Function<Channel, HttpResponseReader<T>> reader,
+                                               Duration timeout, HttpExchangeListener listener, boolean idempotent) {
     if (isClosed()) {
       throw new IllegalStateException("Client already closed");
     }
 
+    CompletableFuture<T> result = new CompletableFuture<>();
+
+    if (timeout != null) {
+      long nanos = timeout.toNanos();
+
+      if (nanos <= 0) {
+        req.release();
+        result.completeExceptionally(deadlineExceeded(timeout));
+        return result;
+      }
+
+      Timeout expiry = SharedTimer.get().newTimeout(t -> result.completeExceptionally(deadlineExceeded(timeout)),
+        nanos, TimeUnit.NANOSECONDS);
+      result.whenComplete((ign, error) -> expiry.cancel());
+    }
+
     ensureHeaders(req);
+    FullHttpRequest encoded = compress(req);
+
+    // Keep the request around to send it again if a reused connection turns out to be closed. Writing
+    // a request consumes its content, so each attempt sends a duplicate of it. A request written before
+    // the connection closed may have been processed, so only idempotent ones are sent again.
+    send(encoded.retainedDuplicate(), reader, false, result, listener).whenComplete((response, error) -> {
+      if (error instanceof StaleChannelException && (idempotent || !((StaleChannelException) error).written) &&
+          !result.isDone()) {
+        log.debug("Connection closed before responding, retrying on a new connection", error);
+        send(encoded, reader, true, result, listener).whenComplete((retried, retryError) -> complete(result, retried, retryError));
+      } else {
+        encoded.release();
+        complete(result, response, error);
+      }
+    });
 
-    CompletableFuture<ChannelResponseTuple> channel = getChannel();
+    return result;
+  }
 
-    return channel.thenCompose(channelResponseTuple ->
-            writeTo(req, channelResponseTuple.channel).thenCompose(length -> channelResponseTuple.responseFuture)
-    );
+  private static TimeoutException deadlineExceeded(Duration timeout) {
+    return new TimeoutException("Request deadline of " + Math.max(timeout.toMillis(), 0) + "ms exceeded");
   }
 
-  private CompletableFuture<ChannelResponseTuple> getChannel() {
-    CompletableFuture<ChannelResponseTuple> ret = null;
+  /**
+   * Sends the request on a channel from the pool, consuming one reference to it. The request is aborted
+   * if <code>caller</code> fails, or is cancelled, before its response completes.
+   */
+  private <T> CompletableFuture<T> send(FullHttpRequest req, Function<Channel, HttpResponseReader<T>> reader,
+                                        boolean fresh, CompletableFuture<?> caller, HttpExchangeListener listener) {
+    CompletableFuture<T> responseFuture = new CompletableFuture<>();
+    long acquireStart = System.nanoTime();
+
+    pool.acquire(fresh).whenComplete((channel, error) -> {
+      if (error != null) {
+        req.release();
+        responseFuture.completeExceptionally(error);
+        return;
+      }
+
+      if (metrics != null) {
+        TransportMetrics.update(metrics.poolWait, acquireStart);
+      }
 
-    do {
-      Channel channel = pool.poll();
+      if (listener != null) {
+        listener.onChannelAcquired(System.nanoTime());
+      }
 
-      if (channel != null && channel.isActive()) {
-        CompletableFuture<FullHttpResponse> responseFuture = new CompletableFuture<>();
-        HttpResponseHandler handler = new HttpResponseHandler(responseFuture);
+      if (caller.isDone()) {
+        req.release();
+        pool.release(channel);
+        responseFuture.completeExceptionally(new CancellationException("Request abandoned before it was sent"));
+        return;
+      }
 
-        responseFuture.whenComplete((a, b) -> pool.offer(channel));
+      CompletableFuture<Channel> target;
+      boolean reused;
 
-        channel.pipeline().replace(HttpResponseHandler.class, "response-handler", handler);
-        ret = CompletableFuture.completedFuture(new ChannelResponseTuple(channel, responseFuture));
+      if (isMultiplexed(channel)) {
+        req.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), "https");
+        reused = channel.attr(USED).setIfAbsent(true) != null;
+        target = openStream(channel);
+      } else {
+        reused = false;
+        target = CompletableFuture.completedFuture(channel);
+      }
 
-      } else if (channel == null) {
-        CompletableFuture<FullHttpResponse> responseFuture = new CompletableFuture<>();
-        HttpResponseHandler handler = new HttpResponseHandler(responseFuture);
+      target.whenComplete((ch, streamError) -> {
+        if (streamError != null) {
+          req.release();
+          responseFuture.completeExceptionally(reused && streamError instanceof IOException
+            ? new StaleChannelException(streamError, false) : streamError);
+          return;
+        }
 
-        CompletableFuture<Channel> connect = connect(ch -> ch.pipeline().addLast(handler));
+        responseFuture.whenComplete((a, b) -> {
+          if (ch == channel) {
+            pool.release(channel);
+            return;
+          }
 
-        ret = connect.thenApply(ch -> {
-          responseFuture.whenComplete((a, b) -> pool.offer(ch));
-          return new ChannelResponseTuple(ch, responseFuture);
+          // The connection only counts the stream as closed once it is done with the frame that ended
+          // it, so the stream is given back afterwards, not to exceed the streams the server allows
+          ch.close();
+          channel.eventLoop().execute(() -> pool.release(channel));
         });
-      }
 
+        PendingResponse<T> pending = new PendingResponse<>(req, reader.apply(ch), responseFuture, metrics, listener);
+        pending.reused = reused;
+
+        if (metrics != null) {
+          metrics.requestBytes.update(req.content().readableBytes());
+        }
+
+        writeTo(pending, ch).whenComplete((ign, writeError) -> {
+          if (writeError != null && !pending.queued) responseFuture.completeExceptionally(writeError);
+        });
+
+        caller.whenComplete((ign, callerError) -> {
+          if (callerError != null && !responseFuture.isDone()) {
+            ch.eventLoop().execute(() -> abort(pending, ch, channel, callerError));
+          }
+        });
+      });
+    });
+
+    return responseFuture;
+  }
+
+  /**
+   * Stops waiting for a response nobody expects anymore. A HTTP/2 stream is reset and its connection
+   * goes back to the pool. A HTTP/1.1 connection cannot skip a response, so it is closed, unless other
+   * pipelined requests wait on it: it is then retired and the abandoned response is discarded.
+   */
+  private void abort(PendingResponse<?> pending, Channel ch, Channel connection, Throwable cause) {
+    if (!pending.fail(cause)) {
+      return;
+    }
+
+    if (ch != connection) {
+      ch.close();
+      return;
     }
-    while (ret == null);
 
-    return ret;
+    HttpResponseHandler handler = ch.pipeline().get(HttpResponseHandler.class);
+
+    if (handler != null && handler.hasPendingBesides(pending)) {
+      HttpChannelPool.retire(ch);
+    } else {
+      ch.close();
+    }
+  }
+
+  private static <T> void complete(CompletableFuture<T> future, T value, Throwable error) {
+    if (error != null) {
+      future.completeExceptionally(error);
+    } else if (!future.complete(value)) {
+      ReferenceCountUtil.release(value);
+    }
+  }
+
+  private CompletableFuture<Channel> openStream(Channel connection) {
+    Http2StreamChannelBootstrap bootstrap = new Http2StreamChannelBootstrap(connection)
+      .handler(new ChannelInitializer<Http2StreamChannel>() {
+        @Override
+        protected void initChannel(Http2StreamChannel ch) {
+          ChannelPipeline p = ch.pipeline();
+          p.addLast("codec", new Http2StreamFrameToHttpObjectCodec(false));
+
+          if (requestTimeout > 0) {
+            p.addLast("timeout handler", new HttpClientTimeoutHandler(requestTimeout));
+          }
+
+          p.addLast("inflator", new MeteredContentDecompressor(responseCompressionRatio));
+          p.addLast("response-handler", new HttpResponseHandler());
+        }
+      });
+
+    CompletableFuture<Channel> stream = new CompletableFuture<>();
+
+    bootstrap.open().addListener(future -> {
+      if (future.isSuccess()) {
+        stream.complete((Http2StreamChannel) future.getNow());
+      } else {
+        pool.release(connection);
+        stream.completeExceptionally(future.cause());
+      }
+    });
+
+    return stream;
+  }
+
+  private boolean isMultiplexed(Channel channel) {
+    return channel.pipeline().get(Http2MultiplexHandler.class) != null;
   }
 
   private void ensureHeaders(FullHttpRequest req) {
-    req.headers().set(HttpHeaderNames.USER_AGENT, "Fauna Netty Http Client");
-    req.headers().set(HttpHeaderNames.HOST, host);
+    req.headers().set(HttpHeaderNames.USER_AGENT, USER_AGENT);
+    req.headers().set(HttpHeaderNames.HOST, hostHeader);
 
     if (!req.headers().contains(HttpHeaderNames.CONTENT_LENGTH) && requestContainsPayload(req)) {
-      req.headers().set(HttpHeaderNames.CONTENT_LENGTH, req.content().readableBytes());
+      req.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, req.content().readableBytes());
+    }
+
+    if (compression && !req.headers().contains(HttpHeaderNames.ACCEPT_ENCODING)) {
+      req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, ACCEPT_ENCODING);
+    }
+  }
+
+  /**
+   * Returns a gzip encoded copy of the request if its body is worth compressing, releasing the
+   * original request, or the request itself otherwise.
+   */
+  private FullHttpRequest compress(FullHttpRequest req) {
+    ByteBuf content = req.content();
+    int length = content.readableBytes();
+
+    if (!compression || length < compressionThreshold || !requestContainsPayload(req) ||
+      req.headers().contains(HttpHeaderNames.CONTENT_ENCODING)) {
+      return req;
+    }
+
+    ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer(length / 2);
+
+    try (OutputStream out = new GZIPOutputStream(new ByteBufOutputStream(compressed)) {
+      { def.setLevel(compressionLevel); }
+    }) {
+      content.getBytes(content.readerIndex(), out, length);
+    } catch (IOException | RuntimeException e) {
+      compressed.release();
+      return req;
+    }
+
+    if (requestCompressionRatio != null) {
+      requestCompressionRatio.update(compressed.readableBytes() * 100L / length);
     }
+
+    FullHttpRequest encoded = req.replace(compressed);
+    encoded.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+    encoded.headers().set(HttpHeaderNames.CONTENT_LENGTH, compressed.readableBytes());
+    req.release();
+
+    return encoded;
   }
 
   private boolean requestContainsPayload(FullHttpRequest req) {
@@ -235,15 +1149,12 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
             req.content().readableBytes() > 0;
   }
 
-  private CompletableFuture<Integer> writeTo(FullHttpRequest req, Channel ch) {
-    int length = req.content().readableBytes();
-    ChannelFuture channelFuture = ch.writeAndFlush(req);
-    return toFuture(channelFuture).thenApply(ign -> length);
+  private CompletableFuture<Channel> writeTo(PendingResponse<?> req, Channel ch) {
+    return toFuture(ch.writeAndFlush(req));
   }
 
-  private CompletableFuture<Channel> connect(Consumer<SocketChannel> socketChannelHandler) {
-    SocketAddress socketAddress = SocketUtils.socketAddress(host, port);
-    return connect(socketAddress, socketChannelHandler);
+  private CompletableFuture<Channel> connect() {
+    return hostConnector.connect(this::connect);
   }
 
   private String extractHost(URL endpoint) {
@@ -264,7 +1175,9 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
     return secured ? 443 : 80;
   }
 
-  private CompletableFuture<Channel> connect(SocketAddress socketAddress, Consumer<SocketChannel> socketChannelHandler) {
+  private CompletableFuture<Channel> connect(SocketAddress socketAddress) {
+    CompletableFuture<Channel> negotiated = new CompletableFuture<>();
+
     Bootstrap cloned = bootstrap.clone();
     cloned.handler(new ChannelInitializer<SocketChannel>() {
       @Override
@@ -275,21 +1188,148 @@ public class HttpClient extends AbstractReferenceCounted implements AutoCloseabl
           p.addFirst("sslHandler", sslHandler(sslContext, ch));
         }
 
-        if (requestTimeout > 0) {
-          p.addLast("timeout handler", new HttpClientTimeoutHandler(requestTimeout));
+        if (http2) {
+          p.addLast("protocol negotiator", new ProtocolNegotiator(negotiated));
+        } else {
+          configureHttp1(p);
         }
-
-        p.addLast("codec", new HttpClientCodec());
-        p.addLast("inflator", new HttpContentDecompressor());
-        p.addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH));
-
-        socketChannelHandler.accept(ch);
       }
     });
 
+    long connectStart = System.nanoTime();
     ChannelFuture cf = cloned.connect(socketAddress);
     CompletableFuture<Channel> completableFuture = toFuture(cf);
-    return completableFuture;
+
+    if (metrics != null) {
+      cf.addListener((ChannelFutureListener) future -> {
+        if (future.isSuccess()) {
+          recordConnect(future.channel(), connectStart);
+        }
+      });
+    }
+
+    if (!http2) {
+      return completableFuture;
+    }
+
+    completableFuture.whenComplete((ch, error) -> {
+      if (error != null) negotiated.completeExceptionally(error);
+    });
+
+    return negotiated;
+  }
+
+  /**
+   * Times the TCP connection, then the TLS handshake, which starts as soon as the channel is active.
+   */
+  private void recordConnect(Channel ch, long connectStart) {
+    long connected = System.nanoTime();
+    metrics.connect.update(connected - connectStart, TimeUnit.NANOSECONDS);
+
+    SslHandler sslHandler = ch.pipeline().get(SslHandler.class);
+    if (sslHandler != null) {
+      sslHandler.handshakeFuture().addListener(handshake -> {
+        if (handshake.isSuccess()) {
+          TransportMetrics.update(metrics.tlsHandshake, connected);
+        }
+      });
+    }
+  }
+
+  private void configureHttp1(ChannelPipeline p) {
+    if (requestTimeout > 0) {
+      p.addLast("timeout handler", new HttpClientTimeoutHandler(requestTimeout));
+    }
+
+    p.addLast("codec", new HttpClientCodec());
+    p.addLast("inflator", new MeteredContentDecompressor(responseCompressionRatio));
+    p.addLast("response-handler", new HttpResponseHandler());
+
+    if (pipeliningDepth > 1) {
+      p.channel().attr(HttpChannelPool.MAX_CONCURRENCY).set(pipeliningDepth);
+    }
+  }
+
+  private void configureHttp2(Channel ch, CompletableFuture<Channel> negotiated) {
+    Http2Settings settings = Http2Settings.defaultSettings()
+      .pushEnabled(false)
+      .maxConcurrentStreams(0);
+
+    ch.pipeline().addLast("http2 codec", Http2FrameCodecBuilder.forClient().initialSettings(settings).build());
+    ch.pipeline().addLast("http2 multiplexer", new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+    ch.pipeline().addLast("http2 settings", new Http2SettingsHandler(negotiated));
+    ch.attr(HttpChannelPool.MAX_CONCURRENCY).set(maxStreamsPerConnection);
+  }
+
+  /**
+   * Caps the streams of an HTTP/2 connection at the server's <code>SETTINGS_MAX_CONCURRENT_STREAMS</code>
+   * whenever it sends its settings, and completes the connect future on the first settings frame, so
+   * that the pool never opens more streams than the server accepts.
+   */
+  private final class Http2SettingsHandler extends ChannelInboundHandlerAdapter {
+
+    private final CompletableFuture<Channel> negotiated;
+
+    Http2SettingsHandler(CompletableFuture<Channel> negotiated) {
+      this.negotiated = negotiated;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      if (!(msg instanceof Http2SettingsFrame)) {
+        ctx.fireChannelRead(msg);
+        return;
+      }
+
+      Long maxStreams = ((Http2SettingsFrame) msg).settings().maxConcurrentStreams();
+      if (maxStreams != null) {
+        ctx.channel().attr(HttpChannelPool.MAX_CONCURRENCY).set((int) Math.min(maxStreamsPerConnection, maxStreams));
+      }
+
+      negotiated.complete(ctx.channel());
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      negotiated.completeExceptionally(new ClosedChannelException());
+      super.channelInactive(ctx);
+    }
+  }
+
+  /**
+   * Configures the connection pipeline once ALPN settles on a protocol, completing the connect
+   * future only after the connection is ready to carry requests.
+   */
+  private final class ProtocolNegotiator extends ApplicationProtocolNegotiationHandler {
+
+    private final CompletableFuture<Channel> negotiated;
+
+    ProtocolNegotiator(CompletableFuture<Channel> negotiated) {
+      super(ApplicationProtocolNames.HTTP_1_1);
+      this.negotiated = negotiated;
+    }
+
+    @Override
+    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+      if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+        configureHttp2(ctx.channel(), negotiated);
+      } else {
+        configureHttp1(ctx.pipeline());
+        negotiated.complete(ctx.channel());
+      }
+    }
+
+    @Override
+    protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) {
+      negotiated.completeExceptionally(cause);
+      ctx.close();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      negotiated.completeExceptionally(new ClosedChannelException());
+      super.channelInactive(ctx);
+    }
   }
 
   private SslHandler sslHandler(SslContext ctx, SocketChannel ch) {
@@ -0,0 +1,54 @@
+package com.faunadb.common.http;
+
+/**
+ * Receives the transport level events of a single request sent through a {@link HttpClient}.
+ *
+ * <p>Callbacks run on the I/O threads of the client and must return quickly. Times are taken from
+ * {@link System#nanoTime()}. A request sent again on a new connection, after its first connection
+ * closed before responding, reports its channel acquisition and write again.</p>
+ */
+public interface HttpExchangeListener {
+
+  /**
+   * Called once the request got a connection from the pool.
+   *
+   * @param nanoTime the time the connection was acquired
+   */
+  default void onChannelAcquired(long nanoTime) {
+  }
+
+  /**
+   * Called once the request has been written to its connection.
+   *
+   * @param bytes the size of the request body, as sent
+   * @param nanoTime the time the write completed
+   */
+  default void onRequestWritten(long bytes, long nanoTime) {
+  }
+
+  /**
+   * Called when the first part of the response is received.
+   *
+   * @param nanoTime the time the response started
+   */
+  default void onFirstByte(long nanoTime) {
+  }
+
+  /**
+   * Called once the whole response has been received, before its body is handed to the caller.
+   *
+   * @param status the response status code
+   * @param nanoTime the time the last part of the response was received
+   */
+  default void onResponseComplete(int status, long nanoTime) {
+  }
+
+  /**
+   * Called once the response body has been read into its final form, such as a JSON tree.
+   *
+   * @param nanoTime the time the body was read
+   */
+  default void onResponseParsed(long nanoTime) {
+  }
+
+}
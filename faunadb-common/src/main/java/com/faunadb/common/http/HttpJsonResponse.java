@@ -0,0 +1,33 @@
+package com.faunadb.common.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * An HTTP response whose JSON body was parsed while it was being received.
+ *
+ * <p>The body never sits in memory as raw bytes and is not subject to any size limit. It holds no
+ * reference counted buffers and does not need to be released.</p>
+ */
+public final class HttpJsonResponse extends DefaultHttpResponse {
+
+  private final JsonNode body;
+
+  HttpJsonResponse(HttpVersion version, HttpResponseStatus status, HttpHeaders headers, JsonNode body) {
+    super(version, status, headers);
+    this.body = body;
+  }
+
+  /**
+   * Returns the parsed response body.
+   *
+   * @return the root of the JSON tree, or <code>null</code> if the body was empty or not valid JSON
+   */
+  public JsonNode body() {
+    return body;
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.faunadb.common.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Parses the response body with Jackson's non-blocking parser as chunks arrive, building the JSON
+ * tree one token at a time. Only the chunk being parsed and the tree built so far are held in memory.
+ *
+ * <p>A body that is not valid JSON does not fail the response: the rest of it is skipped and the
+ * response carries a <code>null</code> body, leaving the caller to decide based on the status.</p>
+ */
+final class HttpJsonResponseReader implements HttpResponseReader<HttpJsonResponse> {
+
+  private static final JsonFactory JSON = new JsonFactory();
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  private final Deque<ContainerNode<?>> parents = new ArrayDeque<>();
+
+  private HttpResponse response;
+  private JsonParser parser;
+  private ByteArrayFeeder feeder;
+  private byte[] scratch = new byte[0];
+  private String fieldName;
+  private JsonNode root;
+  private boolean failed;
+
+  @Override
+  public void start(HttpResponse response) throws IOException {
+    this.response = response;
+    this.parser = JSON.createNonBlockingByteArrayParser();
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  @Override
+  public void content(ByteBuf chunk) {
+    int length = chunk.readableBytes();
+    if (failed || length == 0) {
+      return;
+    }
+
+    try {
+      if (chunk.hasArray()) {
+        int offset = chunk.arrayOffset() + chunk.readerIndex();
+        feeder.feedInput(chunk.array(), offset, offset + length);
+      } else {
+        if (scratch.length < length) {
+          scratch = new byte[length];
+        }
+
+        chunk.getBytes(chunk.readerIndex(), scratch, 0, length);
+        feeder.feedInput(scratch, 0, length);
+      }
+
+      drain();
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Override
+  public HttpJsonResponse finish(LastHttpContent last) {
+    if (!failed) {
+      try {
+        feeder.endOfInput();
+        drain();
+      } catch (IOException e) {
+        fail();
+      }
+    }
+
+    JsonNode body = failed || !parents.isEmpty() ? null : root;
+    discard();
+
+    response.headers().add(last.trailingHeaders());
+    return new HttpJsonResponse(response.protocolVersion(), response.status(), response.headers(), body);
+  }
+
+  @Override
+  public void discard() {
+    if (parser != null) {
+      try {
+        parser.close();
+      } catch (IOException ignore) {}
+      parser = null;
+    }
+  }
+
+  private void drain() throws IOException {
+    JsonToken token;
+
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      switch (token) {
+        case START_OBJECT:
+          push(NODES.objectNode());
+          break;
+        case START_ARRAY:
+          push(NODES.arrayNode());
+          break;
+        case END_OBJECT:
+        case END_ARRAY:
+          parents.pop();
+          break;
+        case FIELD_NAME:
+          fieldName = parser.getCurrentName();
+          break;
+        case VALUE_STRING:
+          add(NODES.textNode(parser.getText()));
+          break;
+        case VALUE_NUMBER_INT:
+          add(intNode());
+          break;
+        case VALUE_NUMBER_FLOAT:
+          add(NODES.numberNode(parser.getDoubleValue()));
+          break;
+        case VALUE_TRUE:
+          add(NODES.booleanNode(true));
+          break;
+        case VALUE_FALSE:
+          add(NODES.booleanNode(false));
+          break;
+        case VALUE_NULL:
+          add(NODES.nullNode());
+          break;
+        default:
+          throw new IOException("Unexpected JSON token " + token);
+      }
+    }
+  }
+
+  private JsonNode intNode() throws IOException {
+    switch (parser.getNumberType()) {
+      case INT:
+        return NODES.numberNode(parser.getIntValue());
+      case LONG:
+        return NODES.numberNode(parser.getLongValue());
+      default:
+        return NODES.numberNode(parser.getBigIntegerValue());
+    }
+  }
+
+  private void push(ContainerNode<?> node) {
+    add(node);
+    parents.push(node);
+  }
+
+  private void add(JsonNode node) {
+    ContainerNode<?> parent = parents.peek();
+
+    if (parent == null) {
+      root = node;
+    } else if (parent instanceof ObjectNode) {
+      ((ObjectNode) parent).set(fieldName, node);
+    } else {
+      ((ArrayNode) parent).add(node);
+    }
+  }
+
+  private void fail() {
+    failed = true;
+    root = null;
+    parents.clear();
+    discard();
+  }
+
+}
@@ -1,50 +1,165 @@
 package com.faunadb.common.http;
 
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CompletableFuture;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
-import static io.netty.util.CharsetUtil.UTF_8;
-import static java.lang.String.format;
+/**
+ * Installed once per channel, matches responses to the requests written through it. Requests are
+ * written as {@link PendingResponse}s and their responses are expected in the same order, which
+ * allows several requests to be in flight on a single HTTP/1.1 connection.
+ *
+ * <p>Responses announcing <code>Connection: close</code> retire the channel from its pool and close it
+ * once complete, and <code>Keep-Alive: timeout</code> hints bound how long the pool reuses it. Requests
+ * lost because a reused channel closed before their response started fail with a
+ * {@link StaleChannelException}, so they can be retried.</p>
+ */
+public class HttpResponseHandler extends ChannelDuplexHandler {
 
-public class HttpResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+  private static final AsciiString KEEP_ALIVE = AsciiString.cached("keep-alive");
 
   private final Logger log = LoggerFactory.getLogger(getClass());
 
-  private final CompletableFuture<FullHttpResponse> responseFuture;
+  private final Deque<PendingResponse<?>> pending = new ArrayDeque<>();
+  private int completed = 0;
+  private boolean closing = false;
 
-  HttpResponseHandler(CompletableFuture<FullHttpResponse> responseFuture) {
-    super(false);
-    this.responseFuture = responseFuture;
+  HttpResponseHandler() {
   }
 
   @Override
-  protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) throws Exception {
-    debugResponse(response);
-    responseFuture.complete(response);
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+    if (!(msg instanceof PendingResponse)) {
+      ctx.write(msg, promise);
+      return;
+    }
+
+    PendingResponse<?> response = (PendingResponse<?>) msg;
+    response.queued = true;
+    pending.addLast(response);
+    int bytes = response.request.content().readableBytes();
+
+    promise.addListener((ChannelFutureListener) future -> {
+      if (future.isSuccess()) {
+        response.written = true;
+        response.onWritten(bytes);
+      } else if (pending.remove(response)) {
+        response.fail(failure(response, future.cause()));
+        ctx.close();
+      }
+    });
+
+    ctx.write(response.request, promise);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (!(msg instanceof HttpObject)) {
+      ctx.fireChannelRead(msg);
+      return;
+    }
+
+    try {
+      PendingResponse<?> response = pending.peekFirst();
+      if (response == null) {
+        throw new IllegalStateException("Received a response without a pending request");
+      }
+
+      if (msg instanceof HttpResponse) {
+        debugResponse((HttpResponse) msg);
+        checkKeepAlive(ctx, (HttpResponse) msg);
+      }
+
+      if (response.read((HttpObject) msg)) {
+        pending.pollFirst();
+        completed++;
+
+        if (closing) {
+          ctx.close();
+        }
+      }
+    } finally {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  /**
+   * Whether requests other than the given one still wait for their response on this channel.
+   */
+  boolean hasPendingBesides(PendingResponse<?> response) {
+    return pending.size() > (pending.contains(response) ? 1 : 0);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    failAll(new ClosedChannelException());
+    ctx.fireChannelInactive();
   }
 
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     ctx.close();
-    responseFuture.completeExceptionally(cause);
+    failAll(cause);
   }
 
-  private void debugResponse(FullHttpResponse httpResponse) {
-    if (!log.isDebugEnabled())
+  private void failAll(Throwable cause) {
+    PendingResponse<?> response;
+    while ((response = pending.pollFirst()) != null) {
+      response.fail(failure(response, cause));
+    }
+  }
+
+  private Throwable failure(PendingResponse<?> response, Throwable cause) {
+    if (cause instanceof IOException && !response.started && (response.reused || completed > 0)) {
+      return new StaleChannelException(cause, response.written);
+    }
+
+    return cause;
+  }
+
+  private void checkKeepAlive(ChannelHandlerContext ctx, HttpResponse response) {
+    if (!HttpUtil.isKeepAlive(response)) {
+      closing = true;
+      HttpChannelPool.retire(ctx.channel());
+      return;
+    }
+
+    String keepAlive = response.headers().get(KEEP_ALIVE);
+    if (keepAlive == null) {
       return;
+    }
 
-    log.debug(format("> STATUS CODE: %d", httpResponse.status().code()));
+    for (String param : keepAlive.split(",")) {
+      String[] pair = param.trim().split("=", 2);
 
-    for (CharSequence name : httpResponse.headers().names())
-      for (CharSequence value : httpResponse.headers().getAll(name))
-        log.debug(format("> HEADER  %s : %s", name, value));
+      if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("timeout")) {
+        try {
+          HttpChannelPool.keepAlive(ctx.channel(), Long.parseLong(pair[1].trim()) * 1000);
+        } catch (NumberFormatException e) {
+          log.debug("Ignoring invalid Keep-Alive header: {}", keepAlive);
+        }
+      }
+    }
+  }
+
+  private void debugResponse(HttpResponse httpResponse) {
+    if (!log.isDebugEnabled())
+      return;
 
-    log.debug(format("> CONTENT: %s", httpResponse.content().toString(UTF_8)));
+    log.debug("Response: status={} headers={}", httpResponse.status().code(), httpResponse.headers());
   }
 
 }
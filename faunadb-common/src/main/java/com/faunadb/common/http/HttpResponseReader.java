@@ -0,0 +1,37 @@
+package com.faunadb.common.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Turns the parts of a response, as they are read from the channel, into a response object.
+ * Readers are driven by {@link HttpResponseHandler} on the channel's event loop.
+ *
+ * @param <T> the type of response produced
+ */
+interface HttpResponseReader<T> {
+
+  /**
+   * Called once with the status line and headers.
+   */
+  void start(HttpResponse response) throws Exception;
+
+  /**
+   * Called for each chunk of the body. The buffer is released once this method returns.
+   */
+  void content(ByteBuf content) throws Exception;
+
+  /**
+   * Called once the body is fully read.
+   *
+   * @return the response
+   */
+  T finish(LastHttpContent last) throws Exception;
+
+  /**
+   * Called when the response can not be read to completion, to release any resources held.
+   */
+  void discard();
+
+}
@@ -0,0 +1,213 @@
+package com.faunadb.common.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The socket transport used by {@link HttpClient} to perform I/O.
+ *
+ * <p>Native transports avoid the JDK selector and are only available on Linux when their native
+ * libraries can be loaded. {@link #IO_URING} additionally requires the
+ * <code>io.netty.incubator:netty-incubator-transport-native-io_uring</code> artifact on the
+ * classpath. Use {@link #best()} to pick the fastest transport available at runtime.</p>
+ */
+public enum HttpTransport {
+
+  /**
+   * Java NIO selector based transport. Always available.
+   */
+  NIO {
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    Class<? extends SocketChannel> socketChannelClass() {
+      return NioSocketChannel.class;
+    }
+
+    @Override
+    Class<? extends DatagramChannel> datagramChannelClass() {
+      return NioDatagramChannel.class;
+    }
+  },
+
+  /**
+   * Linux epoll based native transport.
+   */
+  EPOLL {
+    @Override
+    public boolean isAvailable() {
+      try {
+        return Epoll.isAvailable();
+      } catch (Throwable t) {
+        return false;
+      }
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      return new EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    Class<? extends SocketChannel> socketChannelClass() {
+      return EpollSocketChannel.class;
+    }
+
+    @Override
+    Class<? extends DatagramChannel> datagramChannelClass() {
+      return EpollDatagramChannel.class;
+    }
+
+    @Override
+    boolean configureIdleProbes(Bootstrap bootstrap, int interval) {
+      int seconds = Math.max(1, interval / 1000);
+      bootstrap.option(EpollChannelOption.TCP_KEEPIDLE, seconds);
+      bootstrap.option(EpollChannelOption.TCP_KEEPINTVL, seconds);
+      bootstrap.option(EpollChannelOption.TCP_KEEPCNT, IDLE_PROBES);
+      return true;
+    }
+  },
+
+  /**
+   * Linux io_uring based native transport.
+   */
+  IO_URING {
+    @Override
+    public boolean isAvailable() {
+      try {
+        return (Boolean) Class.forName(IO_URING_PACKAGE + "IOUring").getMethod("isAvailable").invoke(null);
+      } catch (Throwable t) {
+        return false;
+      }
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      try {
+        return (EventLoopGroup) Class.forName(IO_URING_PACKAGE + "IOUringEventLoopGroup")
+          .getConstructor(int.class, ThreadFactory.class)
+          .newInstance(threads, threadFactory);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("io_uring transport is not available", e);
+      }
+    }
+
+    @Override
+    Class<? extends SocketChannel> socketChannelClass() {
+      try {
+        return Class.forName(IO_URING_PACKAGE + "IOUringSocketChannel").asSubclass(SocketChannel.class);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("io_uring transport is not available", e);
+      }
+    }
+
+    @Override
+    Class<? extends DatagramChannel> datagramChannelClass() {
+      try {
+        return Class.forName(IO_URING_PACKAGE + "IOUringDatagramChannel").asSubclass(DatagramChannel.class);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("io_uring transport is not available", e);
+      }
+    }
+  };
+
+  /**
+   * Returns the fastest transport available on this platform: {@link #IO_URING}, then
+   * {@link #EPOLL}, then {@link #NIO}.
+   *
+   * @return the best available {@link HttpTransport}
+   */
+  public static HttpTransport best() {
+    if (IO_URING.isAvailable()) {
+      return IO_URING;
+    }
+
+    if (EPOLL.isAvailable()) {
+      return EPOLL;
+    }
+
+    return NIO;
+  }
+
+  /**
+   * Returns the transport whose channels can be registered with the given event loop group.
+   *
+   * @param group an event loop group created for one of the supported transports
+   * @return the matching {@link HttpTransport}
+   * @throws IllegalArgumentException if the group does not belong to any supported transport
+   */
+  public static HttpTransport of(EventLoopGroup group) {
+    String loop = group.next().getClass().getName();
+
+    if (loop.startsWith("io.netty.channel.nio.")) {
+      return NIO;
+    }
+
+    if (loop.startsWith("io.netty.channel.epoll.")) {
+      return EPOLL;
+    }
+
+    if (loop.startsWith(IO_URING_PACKAGE)) {
+      return IO_URING;
+    }
+
+    throw new IllegalArgumentException("Unsupported event loop group: " + group.getClass().getName());
+  }
+
+  /**
+   * @return true if this transport can be used on the current platform
+   */
+  public abstract boolean isAvailable();
+
+  /**
+   * Creates an event loop group for this transport, made of daemon threads. The group is owned by the
+   * caller, who must shut it down once no client uses it anymore.
+   *
+   * @param threads the number of I/O threads, <code>0</code> for twice the number of available processors
+   * @return a new {@link EventLoopGroup}
+   */
+  public EventLoopGroup newEventLoopGroup(int threads) {
+    return newEventLoopGroup(threads, new DefaultThreadFactory("fauna-http-client", true));
+  }
+
+  abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+  abstract Class<? extends SocketChannel> socketChannelClass();
+
+  abstract Class<? extends DatagramChannel> datagramChannelClass();
+
+  /**
+   * Makes connections send TCP keep-alive probes after {@code interval} milliseconds without traffic,
+   * so dead peers are detected while connections sit idle in the pool.
+   *
+   * @return false if the transport can not tune keep-alive probes, leaving the system defaults
+   */
+  boolean configureIdleProbes(Bootstrap bootstrap, int interval) {
+    return false;
+  }
+
+  private static final int IDLE_PROBES = 3;
+  private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+}
@@ -0,0 +1,72 @@
+package com.faunadb.common.http;
+
+import com.codahale.metrics.Histogram;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.util.List;
+
+/**
+ * A {@link HttpContentDecompressor} that records the compression ratio of every compressed response,
+ * as the size on the wire in percent of the decompressed size.
+ */
+final class MeteredContentDecompressor extends HttpContentDecompressor {
+
+  private final Histogram ratio;
+
+  private boolean compressed;
+  private long encodedBytes;
+  private long decodedBytes;
+
+  MeteredContentDecompressor(Histogram ratio) {
+    this.ratio = ratio;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+    if (ratio == null) {
+      super.decode(ctx, msg, out);
+      return;
+    }
+
+    if (msg instanceof HttpResponse) {
+      String encoding = ((HttpResponse) msg).headers().get(HttpHeaderNames.CONTENT_ENCODING);
+      compressed = encoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(encoding);
+      encodedBytes = 0;
+      decodedBytes = 0;
+    }
+
+    if (compressed && msg instanceof HttpContent) {
+      encodedBytes += ((HttpContent) msg).content().readableBytes();
+    }
+
+    int from = out.size();
+    super.decode(ctx, msg, out);
+
+    if (!compressed) {
+      return;
+    }
+
+    for (int i = from; i < out.size(); i++) {
+      Object decoded = out.get(i);
+      if (decoded instanceof HttpContent) {
+        decodedBytes += ((HttpContent) decoded).content().readableBytes();
+      }
+    }
+
+    if (msg instanceof LastHttpContent) {
+      compressed = false;
+
+      if (decodedBytes > 0) {
+        ratio.update(encodedBytes * 100 / decodedBytes);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,195 @@
+package com.faunadb.common.http;
+
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request written to a channel together with the reader and future of its response. Writing it
+ * through the channel pipeline queues the response in {@link HttpResponseHandler}. Reference counting
+ * is delegated to the request, so the request is released if the write never reaches the handler.
+ *
+ * @param <T> the type of response produced
+ */
+final class PendingResponse<T> implements ReferenceCounted {
+
+  final FullHttpRequest request;
+  final CompletableFuture<T> future;
+  private final HttpResponseReader<T> reader;
+  private final TransportMetrics metrics;
+  private final HttpExchangeListener listener;
+  private final long sentAt = System.nanoTime();
+  private long contentLength = 0;
+  private int status;
+
+  /** Whether the connection carried other requests before this one, when not tracked by the handler. */
+  boolean reused;
+  /** Whether the request reached the {@link HttpResponseHandler}, which then owns its failures. */
+  boolean queued;
+  /** Whether the request was entirely written to the channel. */
+  boolean written;
+  /** Whether any part of the response arrived. */
+  boolean started;
+
+  /**
+   * @param metrics the statistics the response is recorded in, or <code>null</code>
+   * @param listener the listener notified of the response progress, or <code>null</code>
+   */
+  PendingResponse(FullHttpRequest request, HttpResponseReader<T> reader, CompletableFuture<T> future,
+                  TransportMetrics metrics, HttpExchangeListener listener) {
+    this.request = request;
+    this.reader = reader;
+    this.future = future;
+    this.metrics = metrics;
+    this.listener = listener;
+  }
+
+  /**
+   * Feeds a part of the response to the reader.
+   *
+   * @return true once the response is complete
+   */
+  boolean read(HttpObject msg) throws Exception {
+    if (!started && (metrics != null || listener != null)) {
+      firstByte();
+    }
+
+    if (metrics != null) {
+      record(msg);
+    }
+
+    started = true;
+    DecoderResult result = msg.decoderResult();
+    if (result.isFailure()) {
+      throw new IllegalStateException("Invalid HTTP response", result.cause());
+    }
+
+    if (future.isDone()) {
+      // Abandoned by its caller, the response is only drained to keep the connection in sync
+      return msg instanceof LastHttpContent;
+    }
+
+    if (msg instanceof HttpResponse) {
+      status = ((HttpResponse) msg).status().code();
+      reader.start((HttpResponse) msg);
+    }
+
+    if (msg instanceof HttpContent) {
+      reader.content(((HttpContent) msg).content());
+    }
+
+    if (msg instanceof LastHttpContent) {
+      if (listener != null) {
+        listener.onResponseComplete(status, System.nanoTime());
+      }
+
+      T response = reader.finish((LastHttpContent) msg);
+
+      if (listener != null) {
+        listener.onResponseParsed(System.nanoTime());
+      }
+
+      if (!future.complete(response)) {
+        ReferenceCountUtil.release(response);
+      }
+
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Notifies the listener that the request was written. Called on the event loop, before any part of
+   * the response is read.
+   */
+  void onWritten(long bytes) {
+    if (listener != null) {
+      listener.onRequestWritten(bytes, System.nanoTime());
+    }
+  }
+
+  private void firstByte() {
+    long now = System.nanoTime();
+
+    if (metrics != null) {
+      metrics.timeToFirstByte.update(now - sentAt, TimeUnit.NANOSECONDS);
+    }
+
+    if (listener != null) {
+      listener.onFirstByte(now);
+    }
+  }
+
+  private void record(HttpObject msg) {
+    if (msg instanceof HttpContent) {
+      contentLength += ((HttpContent) msg).content().readableBytes();
+    }
+
+    if (msg instanceof LastHttpContent) {
+      metrics.responseBytes.update(contentLength);
+    }
+  }
+
+  /**
+   * Fails the response unless it is already complete.
+   *
+   * @return true if the response was failed
+   */
+  boolean fail(Throwable cause) {
+    if (!future.completeExceptionally(cause)) {
+      return false;
+    }
+
+    reader.discard();
+    return true;
+  }
+
+  @Override
+  public int refCnt() {
+    return request.refCnt();
+  }
+
+  @Override
+  public PendingResponse<T> retain() {
+    request.retain();
+    return this;
+  }
+
+  @Override
+  public PendingResponse<T> retain(int increment) {
+    request.retain(increment);
+    return this;
+  }
+
+  @Override
+  public PendingResponse<T> touch() {
+    request.touch();
+    return this;
+  }
+
+  @Override
+  public PendingResponse<T> touch(Object hint) {
+    request.touch(hint);
+    return this;
+  }
+
+  @Override
+  public boolean release() {
+    return request.release();
+  }
+
+  @Override
+  public boolean release(int decrement) {
+    return request.release(decrement);
+  }
+
+}
@@ -0,0 +1,92 @@
+package com.faunadb.common.http;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process-wide {@link EventLoopGroup} that several {@link HttpClient}s can share instead of each
+ * starting their own I/O threads.
+ *
+ * <p>The group is started on first use with the configured transport and thread count. Closing a
+ * client does not stop it: its threads are daemon threads and live until {@link #shutdownGracefully()}
+ * is called, after which the next use starts a new group.</p>
+ *
+ * <pre>{@code
+ * SharedEventLoopGroup.configure(HttpTransport.best(), 4);
+ *
+ * HttpClient client = HttpClient.builder()
+ *   .withEndpoint(endpoint)
+ *   .withEventLoopGroup(SharedEventLoopGroup.get())
+ *   .build();
+ * }</pre>
+ */
+public final class SharedEventLoopGroup {
+
+  private static final int QUIET_PERIOD = 2_000;
+  private static final int TIMEOUT = 15_000;
+
+  private static HttpTransport transport;
+  private static int threads = 0;
+  private static EventLoopGroup group;
+
+  private SharedEventLoopGroup() {
+  }
+
+  /**
+   * Sets the transport and number of I/O threads of the shared group. Must be called before the
+   * group is first used.
+   *
+   * @param transport the {@link HttpTransport} to use, <code>null</code> for {@link HttpTransport#best()}
+   * @param threads the number of I/O threads, <code>0</code> for twice the number of available processors
+   * @throws IllegalStateException if the shared group is already running
+   * @throws IllegalArgumentException if the transport is not available or the thread count is negative
+   */
+  public static synchronized void configure(HttpTransport transport, int threads) {
+    if (group != null) {
+      throw new IllegalStateException("Shared event loop group already started");
+    }
+
+    if (transport != null && !transport.isAvailable()) {
+      throw new IllegalArgumentException("Invalid transport: " + transport + " is not available on this platform");
+    }
+
+    if (threads < 0) {
+      throw new IllegalArgumentException("threads must not be negative");
+    }
+
+    SharedEventLoopGroup.transport = transport;
+    SharedEventLoopGroup.threads = threads;
+  }
+
+  /**
+   * Returns the shared group, starting it if needed.
+   *
+   * @return the shared {@link EventLoopGroup}
+   */
+  public static synchronized EventLoopGroup get() {
+    if (group == null || group.isShuttingDown()) {
+      HttpTransport selected = transport != null ? transport : HttpTransport.best();
+      group = selected.newEventLoopGroup(threads);
+    }
+
+    return group;
+  }
+
+  /**
+   * Stops the shared group. Clients still using it fail their requests.
+   *
+   * @return a future completed once every thread stopped, or <code>null</code> if the group was not running
+   */
+  public static synchronized Future<?> shutdownGracefully() {
+    if (group == null) {
+      return null;
+    }
+
+    Future<?> terminated = group.shutdownGracefully(QUIET_PERIOD, TIMEOUT, TimeUnit.MILLISECONDS);
+    group = null;
+    return terminated;
+  }
+
+}
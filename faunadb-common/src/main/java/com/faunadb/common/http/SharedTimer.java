@@ -0,0 +1,32 @@
+package com.faunadb.common.http;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process-wide {@link Timer} for request deadlines and retry delays.
+ *
+ * <p>A single timer wheel is cheap no matter how many timeouts are pending, with a precision of about
+ * 10 milliseconds. Its thread is a daemon thread, started with the first timeout.</p>
+ */
+public final class SharedTimer {
+
+  private static final Timer TIMER = new HashedWheelTimer(
+    new DefaultThreadFactory("fauna-timer", true), 10, TimeUnit.MILLISECONDS);
+
+  private SharedTimer() {
+  }
+
+  /**
+   * Returns the shared timer.
+   *
+   * @return the shared {@link Timer}
+   */
+  public static Timer get() {
+    return TIMER;
+  }
+
+}
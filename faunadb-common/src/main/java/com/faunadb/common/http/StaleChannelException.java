@@ -0,0 +1,21 @@
+package com.faunadb.common.http;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Signals that a reused channel was closed before any part of the response arrived. The request can
+ * safely be sent again on another channel if it was never written, or if it is idempotent.
+ */
+final class StaleChannelException extends ClosedChannelException {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Whether the request was entirely written before the channel closed, and may have been processed. */
+  final boolean written;
+
+  StaleChannelException(Throwable cause, boolean written) {
+    this.written = written;
+    initCause(cause);
+  }
+
+}
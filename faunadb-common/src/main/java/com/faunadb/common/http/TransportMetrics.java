@@ -0,0 +1,73 @@
+package com.faunadb.common.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport level statistics of a {@link HttpClient}, telling apart the time spent waiting for a
+ * connection, opening it, and waiting for the endpoint to answer.
+ *
+ * <p>Timers and histograms are shared by every client registering metrics under the same prefix.
+ * Pool gauges are named after the endpoint, and owned by the first client registering them: a client
+ * only removes the gauges it registered when it is closed.</p>
+ */
+final class TransportMetrics {
+
+  final Timer connect;
+  final Timer tlsHandshake;
+  final Timer poolWait;
+  final Timer timeToFirstByte;
+  final Histogram requestBytes;
+  final Histogram responseBytes;
+
+  private final MetricRegistry registry;
+  private final String prefix;
+  private final List<Gauge<Integer>> gauges = new ArrayList<>();
+
+  TransportMetrics(MetricRegistry registry, String prefix) {
+    this.registry = registry;
+    this.prefix = prefix;
+    this.connect = registry.timer(prefix + "-connect");
+    this.tlsHandshake = registry.timer(prefix + "-tls-handshake");
+    this.poolWait = registry.timer(prefix + "-pool-wait");
+    this.timeToFirstByte = registry.timer(prefix + "-time-to-first-byte");
+    this.requestBytes = registry.histogram(prefix + "-request-bytes");
+    this.responseBytes = registry.histogram(prefix + "-response-bytes");
+  }
+
+  /**
+   * Registers the gauges of a connection pool, named <code>&lt;prefix&gt;-pool.&lt;host:port&gt;.*</code>.
+   * A gauge already registered under the same name by another client is left to that client.
+   */
+  void registerPool(String host, int port, HttpChannelPool pool) {
+    String name = MetricRegistry.name(prefix + "-pool", host + ":" + port);
+    register(MetricRegistry.name(name, "active"), pool::active);
+    register(MetricRegistry.name(name, "idle"), pool::idle);
+    register(MetricRegistry.name(name, "pending"), pool::pendingAcquires);
+  }
+
+  /**
+   * Removes the pool gauges registered by this client, leaving the ones of other clients in place.
+   */
+  void unregisterPool() {
+    registry.removeMatching((name, metric) -> gauges.stream().anyMatch(gauge -> gauge == metric));
+    gauges.clear();
+  }
+
+  private void register(String name, Gauge<Integer> gauge) {
+    if (registry.gauge(name, () -> gauge) == gauge) {
+      gauges.add(gauge);
+    }
+  }
+
+  static void update(Timer timer, long startTime) {
+    timer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+  }
+
+}
@@ -0,0 +1,204 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.faunadb.common.CircuitBreaker.REJECTED;
+import static com.faunadb.common.CircuitBreaker.State.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CircuitBreakerSpec {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final Gauges gauges = new Gauges(registry);
+  private final CircuitBreaker breaker = new CircuitBreaker(CircuitBreakerPolicy.builder()
+    .withWindow(10, 4)
+    .withFailureRateThreshold(0.5)
+    .withSlowCalls(Duration.ofMillis(100), 0.75)
+    .withOpenDuration(Duration.ofMillis(50))
+    .withHalfOpenProbes(2)
+    .build(), gauges, "test", "http://db.example.com");
+
+  @Test
+  public void shouldStayClosedUntilTheMinimumCalls() {
+    complete(true, true, true);
+    assertThat(breaker.state(), equalTo(CLOSED));
+  }
+
+  @Test
+  public void shouldOpenOnceTheFailureRateIsReached() {
+    complete(false, true, false);
+    assertThat(breaker.state(), equalTo(CLOSED));
+
+    complete(true);
+    assertThat(breaker.state(), equalTo(OPEN));
+    assertThat(breaker.tryAcquire(), equalTo(REJECTED));
+    assertThat(breaker.allowsRequests(System.nanoTime()), is(false));
+    assertThat(registry.counter("test-circuit-breaker.http://db.example.com.rejected").getCount(), equalTo(1L));
+    assertThat(registry.getGauges().get("test-circuit-breaker.http://db.example.com.state").getValue(), equalTo(1));
+  }
+
+  @Test
+  public void shouldOpenOnceTheSlowCallRateIsReached() {
+    for (int i = 0; i < 3; i++) {
+      breaker.onResult(breaker.tryAcquire(), SLOW, false);
+    }
+
+    breaker.onResult(breaker.tryAcquire(), FAST, false);
+    assertThat(breaker.state(), equalTo(OPEN));
+  }
+
+  @Test
+  public void shouldCloseOnceProbesSucceed() throws Exception {
+    open();
+    Thread.sleep(60);
+
+    long first = breaker.tryAcquire();
+    long second = breaker.tryAcquire();
+    assertThat(breaker.state(), equalTo(HALF_OPEN));
+    assertThat(first, not(equalTo(REJECTED)));
+    assertThat(second, not(equalTo(REJECTED)));
+    assertThat(breaker.tryAcquire(), equalTo(REJECTED));
+
+    breaker.onResult(first, FAST, false);
+    breaker.onResult(second, FAST, false);
+    assertThat(breaker.state(), equalTo(CLOSED));
+  }
+
+  @Test
+  public void shouldReopenOnceProbesFail() throws Exception {
+    open();
+    Thread.sleep(60);
+
+    long first = breaker.tryAcquire();
+    long second = breaker.tryAcquire();
+    breaker.onResult(first, FAST, true);
+    breaker.onResult(second, FAST, false);
+
+    assertThat(breaker.state(), equalTo(OPEN));
+  }
+
+  @Test
+  public void shouldGiveBackTheProbesOfCancelledRequests() throws Exception {
+    open();
+    Thread.sleep(60);
+
+    long first = breaker.tryAcquire();
+    breaker.tryAcquire();
+    breaker.onCancel(first);
+
+    assertThat(breaker.tryAcquire(), not(equalTo(REJECTED)));
+  }
+
+  @Test
+  public void shouldIgnoreOutcomesOfRequestsSentBeforeATransition() throws Exception {
+    long stale = breaker.tryAcquire();
+    open();
+    Thread.sleep(60);
+
+    long probe = breaker.tryAcquire();
+    breaker.onResult(stale, FAST, true);
+    breaker.onResult(stale, FAST, true);
+    assertThat(breaker.state(), equalTo(HALF_OPEN));
+
+    breaker.onResult(probe, FAST, false);
+    breaker.onResult(breaker.tryAcquire(), FAST, false);
+    assertThat(breaker.state(), equalTo(CLOSED));
+  }
+
+  @Test
+  public void shouldRemoveItsGaugeOnceUnregistered() {
+    gauges.unregister();
+    assertThat(registry.getGauges().isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldNotCountClientSideErrorsAsEndpointFailures() throws Exception {
+    try (StubServer server = new StubServer(); Connection connection = connection(server.root())) {
+      for (int i = 0; i < 10; i++) {
+        assertThat(error(connection.postJson("", query(), Duration.ofNanos(1))), instanceOf(TimeoutException.class));
+      }
+
+      assertThat(connection.postJson("", query()).get(5, TimeUnit.SECONDS).status().code(), equalTo(200));
+    }
+  }
+
+  @Test
+  public void shouldCountNetworkErrorsAsEndpointFailures() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    URL root = new URL("http://localhost:" + port);
+
+    try (Connection connection = connection(root)) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(error(connection.postJson("", query())), instanceOf(ConnectException.class));
+      }
+
+      // Outcomes may be recorded after the caller saw the failure
+      awaitState(root, OPEN);
+      assertThat(error(connection.postJson("", query())), instanceOf(CircuitOpenException.class));
+    }
+  }
+
+  private Connection connection(URL root) {
+    return Connection.builder()
+      .withFaunaRoot(root)
+      .withAuthToken("secret")
+      .withMetrics(registry)
+      .withCircuitBreakerPolicy(CircuitBreakerPolicy.builder().withWindow(10, 4).build())
+      .build();
+  }
+
+  private static JsonNode query() {
+    return JsonNodeFactory.instance.objectNode().put("get", "a");
+  }
+
+  private static Throwable error(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+
+    throw new AssertionError("Expected the request to fail");
+  }
+
+  private void awaitState(URL root, CircuitBreaker.State state) throws InterruptedException {
+    Gauge<?> gauge = registry.getGauges().get("fauna-circuit-breaker." + root + ".state");
+
+    for (int i = 0; i < 100 && !gauge.getValue().equals(state.ordinal()); i++) {
+      Thread.sleep(5);
+    }
+  }
+
+  private void open() {
+    complete(true, true, true, true);
+    assertThat(breaker.state(), equalTo(OPEN));
+  }
+
+  private void complete(boolean... failures) {
+    for (boolean failed : failures) {
+      breaker.onResult(breaker.tryAcquire(), FAST, failed);
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimiterSpec {
+
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+  private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final Gauges gauges = new Gauges(registry);
+
+  @Test
+  public void shouldLetRequestsThroughUpToTheLimit() {
+    ConcurrencyLimiter limiter = limiter(2, 10, Duration.ofSeconds(5));
+
+    assertThat(limiter.acquire(NO_DEADLINE).isDone(), is(true));
+    assertThat(limiter.acquire(NO_DEADLINE).isDone(), is(true));
+
+    CompletableFuture<Void> first = limiter.acquire(NO_DEADLINE);
+    CompletableFuture<Void> second = limiter.acquire(NO_DEADLINE);
+    assertThat(first.isDone() || second.isDone(), is(false));
+    assertThat(gauge("test-concurrency-queued"), equalTo(2));
+
+    limiter.release();
+    assertThat(first.isDone(), is(true));
+    assertThat(second.isDone(), is(false));
+
+    limiter.release();
+    assertThat(second.isDone(), is(true));
+    assertThat(gauge("test-concurrency-in-flight"), equalTo(2));
+  }
+
+  @Test
+  public void shouldRejectRequestsBeyondTheQueue() throws Exception {
+    ConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(5));
+    limiter.acquire(NO_DEADLINE);
+    limiter.acquire(NO_DEADLINE);
+
+    assertThat(failure(limiter.acquire(NO_DEADLINE)), instanceOf(ConcurrencyLimitException.class));
+    assertThat(registry.counter("test-concurrency-rejected").getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldRejectRequestsWaitingTooLong() throws Exception {
+    ConcurrencyLimiter limiter = limiter(1, 10, Duration.ofMillis(50));
+    limiter.acquire(NO_DEADLINE);
+
+    assertThat(failure(limiter.acquire(NO_DEADLINE)), instanceOf(ConcurrencyLimitException.class));
+    assertThat(gauge("test-concurrency-queued"), equalTo(0));
+  }
+
+  @Test
+  public void shouldNotWaitPastTheRequestDeadline() throws Exception {
+    ConcurrencyLimiter limiter = limiter(1, 10, Duration.ofSeconds(30));
+    limiter.acquire(NO_DEADLINE);
+
+    long start = System.nanoTime();
+    assertThat(failure(limiter.acquire(TimeUnit.MILLISECONDS.toNanos(50))), instanceOf(ConcurrencyLimitException.class));
+    assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(5)));
+  }
+
+  @Test
+  public void shouldGrowTheLimitWhileRoundTripsHold() {
+    ConcurrencyLimiter limiter = limiter(10, 10, Duration.ofSeconds(5));
+    fill(limiter, 10);
+
+    sample(limiter, 20, RTT, false);
+    assertThat(gauge("test-concurrency-limit"), greaterThan(10));
+    assertThat(limiter.acquire(NO_DEADLINE).isDone(), is(true));
+  }
+
+  @Test
+  public void shouldShrinkTheLimitWhenRoundTripsRise() {
+    ConcurrencyLimiter limiter = limiter(20, 10, Duration.ofSeconds(5));
+    fill(limiter, 20);
+
+    sample(limiter, 20, RTT, false);
+    int limit = gauge("test-concurrency-limit");
+
+    sample(limiter, 20, RTT * 10, false);
+    assertThat(gauge("test-concurrency-limit"), lessThan(limit));
+  }
+
+  @Test
+  public void shouldShrinkTheLimitWhenRequestsAreDropped() {
+    ConcurrencyLimiter limiter = limiter(10, 10, Duration.ofSeconds(5));
+
+    sample(limiter, 10, RTT, true);
+    assertThat(gauge("test-concurrency-limit"), equalTo(9));
+  }
+
+  @Test
+  public void shouldKeepTheLimitWithinItsRange() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(ConcurrencyLimitPolicy.builder()
+      .withInitialLimit(3)
+      .withLimitRange(2, 4)
+      .build(), gauges, "test");
+
+    for (int i = 0; i < 10; i++) {
+      sample(limiter, 10, RTT, true);
+    }
+
+    assertThat(gauge("test-concurrency-limit"), equalTo(2));
+  }
+
+  @Test
+  public void shouldRemoveItsGaugesOnceUnregistered() {
+    limiter(1, 1, Duration.ofSeconds(1));
+    gauges.unregister();
+
+    assertThat(registry.getGauges().isEmpty(), is(true));
+  }
+
+  private ConcurrencyLimiter limiter(int limit, int maxQueued, Duration maxWait) {
+    return new ConcurrencyLimiter(ConcurrencyLimitPolicy.builder()
+      .withInitialLimit(limit)
+      .withQueue(maxQueued, maxWait)
+      .build(), gauges, "test");
+  }
+
+  private int gauge(String name) {
+    return (Integer) registry.getGauges().get(name).getValue();
+  }
+
+  private static void fill(ConcurrencyLimiter limiter, int requests) {
+    for (int i = 0; i < requests; i++) {
+      assertThat(limiter.acquire(NO_DEADLINE).isDone(), is(true));
+    }
+  }
+
+  private static void sample(ConcurrencyLimiter limiter, int samples, long rtt, boolean dropped) {
+    for (int i = 0; i < samples; i++) {
+      limiter.onSample(rtt, dropped);
+    }
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+
+    fail("Expected the future to fail");
+    return null;
+  }
+
+}
@@ -0,0 +1,173 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.faunadb.common.http.HttpJsonResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HedgingSpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+  private static final Duration SLOW = Duration.ofMillis(500);
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private StubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubServer();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void shouldNotHedgeBeforeEnoughSamples() {
+    Hedging hedging = newHedging(HedgePolicy.DEFAULT);
+
+    for (int i = 0; i < 99; i++) {
+      hedging.record(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    assertThat(hedging.delayNanos(), equalTo(-1L));
+  }
+
+  @Test
+  public void shouldDelayHedgesByTheLatencyPercentile() {
+    Hedging hedging = newHedging(HedgePolicy.builder().withMinDelay(Duration.ZERO).build());
+
+    for (int i = 1; i <= 100; i++) {
+      hedging.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+
+    assertThat(hedging.delayNanos(), both(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(94)))
+      .and(lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(96))));
+  }
+
+  @Test
+  public void shouldDelayHedgesByAtLeastTheMinimumDelay() {
+    Hedging hedging = newHedging(HedgePolicy.builder().withMinDelay(Duration.ofMillis(20)).build());
+
+    for (int i = 0; i < 100; i++) {
+      hedging.record(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    assertThat(hedging.delayNanos(), equalTo(TimeUnit.MILLISECONDS.toNanos(20)));
+  }
+
+  @Test
+  public void shouldHedgeSlowReads() throws Exception {
+    try (Connection connection = newConnection(HedgePolicy.builder().withMinDelay(Duration.ofMillis(20)).build())) {
+      warmUp(connection);
+      server.delay(SLOW);
+
+      long start = System.nanoTime();
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+
+      assertThat(System.nanoTime() - start, lessThan(SLOW.toNanos()));
+      assertThat(server.requests.get(), equalTo(102));
+      assertThat(registry.counter("fauna-request-hedges").getCount(), equalTo(1L));
+      assertThat(registry.counter("fauna-request-hedges-won").getCount(), equalTo(1L));
+
+      // The slow request is abandoned, which gives its connection back before the server answers
+      assertThat(poll(() -> activeConnections() == 0), is(true));
+      assertThat(System.nanoTime() - start, lessThan(SLOW.toNanos()));
+    }
+  }
+
+  @Test
+  public void shouldNotHedgeWrites() throws Exception {
+    try (Connection connection = newConnection(HedgePolicy.builder().withMinDelay(Duration.ofMillis(20)).build())) {
+      warmUp(connection);
+      server.delay(Duration.ofMillis(200));
+
+      assertThat(status(connection, "{\"create\":{\"collection\":\"spells\"}}"), equalTo(200));
+      assertThat(server.requests.get(), equalTo(101));
+      assertThat(registry.counter("fauna-request-hedges").getCount(), equalTo(0L));
+    }
+  }
+
+  @Test
+  public void shouldCapHedgesWithABudget() throws Exception {
+    HedgePolicy policy = HedgePolicy.builder().withMinDelay(Duration.ofMillis(20)).withBudget(0, 1).build();
+
+    try (Connection connection = newConnection(policy)) {
+      warmUp(connection);
+
+      server.delay(Duration.ofMillis(200));
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+
+      server.delay(Duration.ofMillis(200));
+      assertThat(status(connection, "{\"get\":\"b\"}"), equalTo(200));
+
+      assertThat(server.requests.get(), equalTo(103));
+      assertThat(registry.counter("fauna-request-hedges").getCount(), equalTo(1L));
+      assertThat(registry.counter("fauna-request-hedges-denied").getCount(), equalTo(1L));
+    }
+  }
+
+  private Hedging newHedging(HedgePolicy policy) {
+    return new Hedging(policy, new Histogram(new UniformReservoir()));
+  }
+
+  private Connection newConnection(HedgePolicy policy) throws Exception {
+    return Connection.builder()
+      .withFaunaRoot(server.root())
+      .withAuthToken("secret")
+      .withMetrics(registry)
+      .withHedgePolicy(policy)
+      .build();
+  }
+
+  /**
+   * Records enough fast reads for the hedge delay to be computed, and waits for it to be refreshed.
+   */
+  private void warmUp(Connection connection) throws Exception {
+    for (int i = 0; i < 100; i++) {
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+    }
+
+    Thread.sleep(1100);
+  }
+
+  private int activeConnections() throws Exception {
+    return (Integer) registry.getGauges().get("fauna-pool.localhost:" + server.root().getPort() + ".active").getValue();
+  }
+
+  private static int status(Connection connection, String query) throws Exception {
+    JsonNode body = json.readTree(query);
+    HttpJsonResponse response = connection.postJson("", body).get(5, TimeUnit.SECONDS);
+    return response.status().code();
+  }
+
+  private static boolean poll(Condition condition) throws Exception {
+    for (int i = 0; i < 100; i++) {
+      if (condition.holds()) {
+        return true;
+      }
+
+      Thread.sleep(5);
+    }
+
+    return false;
+  }
+
+  @FunctionalInterface
+  private interface Condition {
+    boolean holds() throws Exception;
+  }
+
+}
@@ -0,0 +1,117 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.MetricRegistry;
+import com.faunadb.common.http.HttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LoadBalancerSpec {
+
+  private LoadBalancer.Endpoint a;
+  private LoadBalancer.Endpoint b;
+  private LoadBalancer balancer;
+
+  @Before
+  public void setUp() throws Exception {
+    a = endpoint("http://a.example.com");
+    b = endpoint("http://b.example.com");
+    balancer = new LoadBalancer(Arrays.asList(a, b), null, null, new Gauges(new MetricRegistry()), -1);
+  }
+
+  @After
+  public void tearDown() {
+    balancer.release();
+  }
+
+  @Test
+  public void shouldEjectEndpointsFailingSeveralRequestsInARow() {
+    fail(a, 5);
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(balancer.select(), sameInstance(b));
+    }
+  }
+
+  @Test
+  public void shouldForgetFailuresOnceARequestSucceeds() {
+    fail(a, 4);
+    succeed(a, 0);
+    fail(a, 4);
+    succeed(b, TimeUnit.SECONDS.toNanos(1));
+
+    assertThat(selected(), equalTo(set(a)));
+  }
+
+  @Test
+  public void shouldSpreadRequestsWhenEveryEndpointIsEjected() {
+    fail(a, 5);
+    fail(b, 5);
+
+    assertThat(selected().isEmpty(), is(false));
+  }
+
+  @Test
+  public void shouldPreferTheCheaperEndpoint() {
+    succeed(a, TimeUnit.SECONDS.toNanos(1));
+    succeed(b, TimeUnit.MILLISECONDS.toNanos(1));
+
+    assertThat(selected(), equalTo(set(b)));
+
+    for (int i = 0; i < 2000; i++) {
+      b.start();
+    }
+
+    assertThat(selected(), equalTo(set(a)));
+  }
+
+  @Test
+  public void shouldSelectAnotherEndpoint() {
+    for (int i = 0; i < 100; i++) {
+      assertThat(balancer.selectOther(a), sameInstance(b));
+      assertThat(balancer.selectOther(b), sameInstance(a));
+    }
+  }
+
+  private Set<LoadBalancer.Endpoint> selected() {
+    Set<LoadBalancer.Endpoint> selected = new HashSet<>();
+
+    for (int i = 0; i < 100; i++) {
+      selected.add(balancer.select());
+    }
+
+    return selected;
+  }
+
+  private static void fail(LoadBalancer.Endpoint endpoint, int times) {
+    for (int i = 0; i < times; i++) {
+      endpoint.start();
+      endpoint.complete(System.nanoTime(), true);
+    }
+  }
+
+  private static void succeed(LoadBalancer.Endpoint endpoint, long latencyNanos) {
+    endpoint.start();
+    endpoint.complete(System.nanoTime() - latencyNanos, false);
+  }
+
+  private static Set<LoadBalancer.Endpoint> set(LoadBalancer.Endpoint... endpoints) {
+    return new HashSet<>(Arrays.asList(endpoints));
+  }
+
+  private static LoadBalancer.Endpoint endpoint(String root) throws MalformedURLException {
+    URL url = new URL(root);
+    return new LoadBalancer.Endpoint(url, HttpClient.builder().withEndpoint(url).build(), null);
+  }
+
+}
@@ -0,0 +1,140 @@
+package com.faunadb.common;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MetricsSpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private StubServer server;
+  private String pool;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubServer();
+    pool = "test-pool.localhost:" + server.root().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void shouldRegisterMetricsUnderThePrefix() throws Exception {
+    try (Connection connection = newConnection().build()) {
+      query(connection);
+      awaitCount("test-response-status.200", 1);
+
+      assertThat(registry.getNames(), hasItems("test-request", "test-connect", "test-pool-wait",
+        "test-time-to-first-byte", "test-request-bytes", "test-response-bytes", "test-response-status.200",
+        pool + ".active", pool + ".idle", pool + ".pending"));
+      assertThat(registry.getNames(), everyItem(startsWith("test-")));
+      assertThat(registry.timer("test-connect").getCount(), equalTo(1L));
+      assertThat(registry.histogram("test-request-bytes").getCount(), equalTo(1L));
+      assertThat(registry.getGauges().get(pool + ".idle").getValue(), equalTo(1));
+    }
+  }
+
+  @Test
+  public void shouldCountStatusesAndErrors() throws Exception {
+    server.respond(503, 404);
+
+    try (Connection connection = newConnection().build()) {
+      query(connection);
+      query(connection);
+      query(connection);
+    }
+
+    awaitCount("test-response-status.503", 1);
+    awaitCount("test-response-status.404", 1);
+    awaitCount("test-response-status.200", 1);
+    assertThat(registry.timer("test-request").getCount(), equalTo(3L));
+
+    URL closed;
+
+    try (ServerSocket socket = new ServerSocket(0)) {
+      closed = new URL("http://localhost:" + socket.getLocalPort());
+    }
+
+    try (Connection connection = newConnection().withFaunaRoot(closed).build()) {
+      query(connection);
+      fail("The request should fail");
+    } catch (ExecutionException e) {
+      awaitCount("test-request-errors." + e.getCause().getClass().getSimpleName(), 1);
+    }
+  }
+
+  @Test
+  public void shouldRemoveGaugesOnClose() throws Exception {
+    Connection connection = newConnection()
+      .withCircuitBreakerPolicy(CircuitBreakerPolicy.DEFAULT)
+      .withConcurrencyLimitPolicy(ConcurrencyLimitPolicy.DEFAULT)
+      .withHedgePolicy(HedgePolicy.DEFAULT)
+      .build();
+    Connection session = connection.newSessionConnection("session");
+
+    query(connection);
+    awaitCount("test-response-status.200", 1);
+
+    assertThat(registry.getGauges().keySet(), hasItems(pool + ".active", "test-request-hedge-delay",
+      "test-concurrency-limit", "test-circuit-breaker." + server.root() + ".state"));
+
+    connection.close();
+    assertThat(registry.getGauges().keySet(), hasItem(pool + ".active"));
+
+    session.close();
+    assertThat(registry.getGauges().keySet(), empty());
+    assertThat(registry.getNames(), hasItems("test-request", "test-connect", "test-response-status.200"));
+  }
+
+  @Test
+  public void shouldOnlyRemoveTheGaugesAClientRegistered() throws Exception {
+    Connection first = newConnection().withConcurrencyLimitPolicy(ConcurrencyLimitPolicy.DEFAULT).build();
+    Connection second = newConnection().withConcurrencyLimitPolicy(ConcurrencyLimitPolicy.DEFAULT).build();
+
+    second.close();
+    assertThat(registry.getGauges().keySet(), hasItems(pool + ".active", pool + ".idle", pool + ".pending",
+      "test-concurrency-limit"));
+
+    first.close();
+    assertThat(registry.getGauges().keySet(), empty());
+  }
+
+  private Connection.Builder newConnection() throws Exception {
+    return Connection.builder()
+      .withFaunaRoot(server.root())
+      .withAuthToken("secret")
+      .withMetrics(registry, "test");
+  }
+
+  /**
+   * Waits for a counter, as request metrics may be recorded after their responses have been handed over.
+   */
+  private void awaitCount(String counter, long count) throws InterruptedException {
+    for (int i = 0; i < 100 && registry.counter(counter).getCount() < count; i++) {
+      Thread.sleep(5);
+    }
+
+    assertThat(registry.counter(counter).getCount(), equalTo(count));
+  }
+
+  private static void query(Connection connection) throws Exception {
+    connection.postJson("", json.readTree("{\"get\":\"a\"}")).get(5, TimeUnit.SECONDS);
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.faunadb.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class QueryEffectsSpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+
+  @Test
+  public void shouldTellReadsApart() throws IOException {
+    assertThat(mayWrite("{\"get\":{\"@ref\":{\"id\":\"1\"}}}"), is(false));
+    assertThat(mayWrite("{\"paginate\":{\"match\":{\"index\":\"spells\"}},\"size\":10}"), is(false));
+    assertThat(mayWrite("[{\"add\":[1,2]},\"create\",42,null]"), is(false));
+  }
+
+  @Test
+  public void shouldFindWritesAnywhereInTheQuery() throws IOException {
+    assertThat(mayWrite("{\"create\":{\"collection\":\"spells\"},\"params\":{}}"), is(true));
+    assertThat(mayWrite("{\"let\":[{\"x\":{\"update\":{\"@ref\":{\"id\":\"1\"}}}}],\"in\":{\"var\":\"x\"}}"), is(true));
+    assertThat(mayWrite("[{\"get\":\"a\"},{\"delete\":\"b\"}]"), is(true));
+  }
+
+  @Test
+  public void shouldTreatFunctionCallsAsWrites() throws IOException {
+    assertThat(mayWrite("{\"call\":{\"function\":\"f\"},\"arguments\":[]}"), is(true));
+  }
+
+  @Test
+  public void shouldIgnoreTheKeysOfObjectLiterals() throws IOException {
+    assertThat(mayWrite("{\"object\":{\"create\":1,\"delete\":{\"add\":[1]}}}"), is(false));
+    assertThat(mayWrite("{\"object\":{\"data\":{\"insert\":\"x\"}}}"), is(true));
+  }
+
+  private static boolean mayWrite(String query) throws IOException {
+    JsonNode node = json.readTree(query);
+    return QueryEffects.mayWrite(node);
+  }
+
+}
@@ -0,0 +1,269 @@
+package com.faunadb.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.faunadb.common.http.HttpJsonResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestListenerSpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+  private static final List<String> COMPLETED = Arrays.asList("start", "acquired", "written", "first byte", "complete 200", "parsed");
+
+  private final Recorder recorder = new Recorder();
+  private StubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubServer();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void shouldReportTheLifecycleOfARequest() throws Exception {
+    try (Connection connection = newConnection().build()) {
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+    }
+
+    RequestTrace trace = recorder.only();
+    assertThat(trace.method(), equalTo("POST"));
+    assertThat(trace.path(), equalTo(""));
+    assertThat(trace.endpoint(), equalTo(server.root()));
+    assertThat(trace.attempt(), equalTo(1));
+    assertThat(trace.isHedge(), is(false));
+    assertThat(recorder.events(trace), equalTo(COMPLETED));
+  }
+
+  @Test
+  public void shouldReportFailures() throws Exception {
+    URL closed;
+
+    try (ServerSocket socket = new ServerSocket(0)) {
+      closed = new URL("http://localhost:" + socket.getLocalPort());
+    }
+
+    try (Connection connection = newConnection().withFaunaRoot(closed).build()) {
+      connection.postJson("", json.readTree("{\"get\":\"a\"}")).get(5, TimeUnit.SECONDS);
+      fail("The request should fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ConnectException.class));
+    }
+
+    RequestTrace trace = recorder.only();
+    assertThat(recorder.events(trace), equalTo(Arrays.asList("start", "failure")));
+    assertThat(recorder.failure(trace), instanceOf(ConnectException.class));
+  }
+
+  @Test
+  public void shouldTraceRetriesSeparately() throws Exception {
+    server.respond(503);
+
+    RetryPolicy retries = RetryPolicy.builder().withBackoff(Duration.ofMillis(1), Duration.ofMillis(5)).build();
+
+    try (Connection connection = newConnection().withRetryPolicy(retries).build()) {
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+    }
+
+    List<RequestTrace> traces = recorder.traces();
+    assertThat(traces.size(), equalTo(2));
+    assertThat(traces.get(0).attempt(), equalTo(1));
+    assertThat(recorder.events(traces.get(0)),
+      equalTo(Arrays.asList("start", "acquired", "written", "first byte", "complete 503", "parsed")));
+    assertThat(traces.get(1).attempt(), equalTo(2));
+    assertThat(recorder.events(traces.get(1)), equalTo(COMPLETED));
+  }
+
+  @Test
+  public void shouldCancelTheRequestsLosingToAHedge() throws Exception {
+    HedgePolicy hedges = HedgePolicy.builder().withMinDelay(Duration.ofMillis(20)).build();
+
+    try (Connection connection = newConnection().withHedgePolicy(hedges).build()) {
+      for (int i = 0; i < 100; i++) {
+        status(connection, "{\"get\":\"a\"}");
+      }
+
+      // Lets the hedge delay be computed from the requests above
+      Thread.sleep(1100);
+      recorder.clear();
+
+      server.delay(Duration.ofMillis(500));
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+    }
+
+    List<RequestTrace> traces = recorder.traces();
+    assertThat(traces.size(), equalTo(2));
+    assertThat(traces.get(0).isHedge(), is(false));
+    assertThat(recorder.events(traces.get(0)),
+      equalTo(Arrays.asList("start", "acquired", "written", "failure")));
+    assertThat(recorder.failure(traces.get(0)), instanceOf(CancellationException.class));
+    assertThat(traces.get(1).isHedge(), is(true));
+    assertThat(traces.get(1).attempt(), equalTo(1));
+    assertThat(recorder.events(traces.get(1)), equalTo(COMPLETED));
+  }
+
+  @Test
+  public void shouldIgnoreListenerFailures() throws Exception {
+    RequestListener failing = new RequestListener() {
+      @Override
+      public void onRequestStart(RequestTrace request, long nanoTime) {
+        throw new IllegalStateException("start");
+      }
+
+      @Override
+      public void onResponseComplete(RequestTrace request, int status, long nanoTime) {
+        throw new IllegalStateException("complete");
+      }
+
+      @Override
+      public void onParseComplete(RequestTrace request, long nanoTime) {
+        throw new IllegalStateException("parsed");
+      }
+    };
+
+    try (Connection connection = newConnection().withRequestListener(failing).build()) {
+      assertThat(status(connection, "{\"get\":\"a\"}"), equalTo(200));
+    }
+  }
+
+  private Connection.Builder newConnection() throws Exception {
+    return Connection.builder()
+      .withFaunaRoot(server.root())
+      .withAuthToken("secret")
+      .withRequestListener(recorder);
+  }
+
+  private static int status(Connection connection, String query) throws Exception {
+    JsonNode body = json.readTree(query);
+    HttpJsonResponse response = connection.postJson("", body).get(5, TimeUnit.SECONDS);
+    return response.status().code();
+  }
+
+  /**
+   * Records the events of each request, in the order requests started.
+   */
+  private static final class Recorder implements RequestListener {
+
+    private final List<RequestTrace> traces = new ArrayList<>();
+    private final Map<RequestTrace, List<String>> events = new ConcurrentHashMap<>();
+    private final Map<RequestTrace, Throwable> failures = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRequestStart(RequestTrace request, long nanoTime) {
+      synchronized (traces) {
+        traces.add(request);
+      }
+
+      record(request, "start");
+    }
+
+    @Override
+    public void onChannelAcquired(RequestTrace request, long nanoTime) {
+      record(request, "acquired");
+    }
+
+    @Override
+    public void onRequestWritten(RequestTrace request, long bytes, long nanoTime) {
+      record(request, "written");
+    }
+
+    @Override
+    public void onFirstByte(RequestTrace request, long nanoTime) {
+      record(request, "first byte");
+    }
+
+    @Override
+    public void onResponseComplete(RequestTrace request, int status, long nanoTime) {
+      record(request, "complete " + status);
+    }
+
+    @Override
+    public void onParseComplete(RequestTrace request, long nanoTime) {
+      record(request, "parsed");
+    }
+
+    @Override
+    public void onFailure(RequestTrace request, Throwable cause, long nanoTime) {
+      failures.put(request, cause);
+      record(request, "failure");
+    }
+
+    List<RequestTrace> traces() {
+      synchronized (traces) {
+        return new ArrayList<>(traces);
+      }
+    }
+
+    RequestTrace only() {
+      List<RequestTrace> traces = traces();
+      assertThat(traces.size(), equalTo(1));
+      return traces.get(0);
+    }
+
+    /**
+     * Waits for the request to end, and returns its events.
+     */
+    List<String> events(RequestTrace trace) throws InterruptedException {
+      List<String> recorded = events.get(trace);
+
+      for (int i = 0; i < 100 && !ended(recorded); i++) {
+        Thread.sleep(5);
+      }
+
+      synchronized (recorded) {
+        return new ArrayList<>(recorded);
+      }
+    }
+
+    Throwable failure(RequestTrace trace) {
+      return failures.get(trace);
+    }
+
+    void clear() {
+      synchronized (traces) {
+        traces.clear();
+      }
+
+      events.clear();
+      failures.clear();
+    }
+
+    private void record(RequestTrace request, String event) {
+      List<String> recorded = events.computeIfAbsent(request, r -> new ArrayList<>());
+
+      synchronized (recorded) {
+        recorded.add(event);
+      }
+    }
+
+    private static boolean ended(List<String> recorded) {
+      synchronized (recorded) {
+        String last = recorded.get(recorded.size() - 1);
+        return last.equals("parsed") || last.equals("failure");
+      }
+    }
+  }
+
+}
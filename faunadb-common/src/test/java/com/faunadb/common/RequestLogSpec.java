@@ -0,0 +1,145 @@
+package com.faunadb.common;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.faunadb.common.http.HttpClient;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RequestLogSpec {
+
+  private static final String BODY = "{\"name\":\"\u00e9\u00e9\u00e9\u00e9\u00e9\u20ac\u20ac\ud83d\ude00\"}";
+
+  private final Logger logger = (Logger) LoggerFactory.getLogger(Connection.class);
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+  private Level level;
+
+  @Before
+  public void setUp() {
+    level = logger.getLevel();
+    logger.setLevel(Level.DEBUG);
+    logger.addAppender(appender);
+    appender.start();
+  }
+
+  @After
+  public void tearDown() {
+    logger.detachAppender(appender);
+    logger.setLevel(level);
+  }
+
+  @Test
+  public void shouldLogEveryFailureByDefault() {
+    RequestLog log = new RequestLog(RequestLogPolicy.DEFAULT);
+
+    for (int i = 0; i < 100; i++) {
+      log.failure(request(), "/", 1, System.nanoTime(), new IOException("Connection reset"));
+    }
+
+    assertThat(events(Level.INFO).size(), equalTo(100));
+  }
+
+  @Test
+  public void shouldSampleFailuresAtTheirOwnRate() {
+    RequestLog log = new RequestLog(RequestLogPolicy.builder().withSampleRate(1).withFailureSampleRate(0).build());
+
+    log.failure(request(), "/", 1, System.nanoTime(), new IOException("Connection reset"));
+    log.success(request(), "/", 1, System.nanoTime(), response());
+
+    assertThat(events(Level.INFO).size(), equalTo(0));
+    assertThat(events(Level.DEBUG).size(), equalTo(1));
+  }
+
+  @Test
+  public void shouldSampleCompletedRequests() {
+    RequestLog none = new RequestLog(RequestLogPolicy.builder().withSampleRate(0).build());
+    RequestLog half = new RequestLog(RequestLogPolicy.builder().withSampleRate(0.5).build());
+
+    for (int i = 0; i < 1000; i++) {
+      none.success(request(), "/", 1, System.nanoTime(), response());
+      half.success(request(), "/", 1, System.nanoTime(), response());
+    }
+
+    assertThat(events(Level.DEBUG).size(), both(greaterThan(350)).and(lessThan(650)));
+  }
+
+  @Test
+  public void shouldCutBodiesOnCharacterBoundaries() {
+    for (int max = 0; max <= BODY.getBytes(UTF_8).length; max++) {
+      RequestLog log = new RequestLog(RequestLogPolicy.builder().withSampleRate(1).withMaxBodyBytes(max).build());
+      log.success(request(), "/", 1, System.nanoTime(), response());
+    }
+
+    List<ILoggingEvent> events = events(Level.DEBUG);
+    assertThat(events.size(), equalTo(BODY.getBytes(UTF_8).length + 1));
+
+    for (ILoggingEvent event : events) {
+      String message = event.getFormattedMessage();
+      assertThat(message, not(containsString("\ufffd")));
+      assertThat(message.codePoints().anyMatch(c -> c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE), is(false));
+    }
+
+    assertThat(events.get(events.size() - 1).getFormattedMessage(), containsString("body=" + BODY));
+  }
+
+  @Test
+  public void shouldSumUpEndpointErrors() throws Exception {
+    URL root = new URL("http://db.example.com");
+    LoadBalancer.Endpoint endpoint = new LoadBalancer.Endpoint(root, HttpClient.builder().withEndpoint(root).build(), null);
+    RequestLog log = new RequestLog(RequestLogPolicy.builder().withSummaryInterval(Duration.ofMillis(50)).build());
+
+    try {
+      log.record(endpoint, null);
+      log.record(endpoint, "503");
+      log.record(endpoint, "503");
+      log.record(endpoint, "ConnectException");
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (events(Level.WARN).isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+
+      List<ILoggingEvent> summaries = events(Level.WARN);
+      assertThat(summaries.size(), equalTo(1));
+      assertThat(summaries.get(0).getFormattedMessage(), allOf(containsString("errors=3"), containsString("requests=4"),
+        containsString("causes={503=2, ConnectException=1}")));
+    } finally {
+      endpoint.client.close();
+    }
+  }
+
+  private List<ILoggingEvent> events(Level level) {
+    return appender.list.stream().filter(event -> event.getLevel() == level).collect(Collectors.toList());
+  }
+
+  private static FullHttpRequest request() {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/", Unpooled.copiedBuffer(BODY, UTF_8));
+  }
+
+  private static FullHttpResponse response() {
+    return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer("{}", UTF_8));
+  }
+
+}
@@ -0,0 +1,138 @@
+package com.faunadb.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.faunadb.common.http.HttpJsonResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class RetryPolicySpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+
+  private StubServer server;
+  private Connection connection;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubServer();
+    connection = Connection.builder()
+      .withFaunaRoot(server.root())
+      .withAuthToken("secret")
+      .withRetryPolicy(RetryPolicy.builder().withBackoff(Duration.ofMillis(1), Duration.ofMillis(5)).build())
+      .build();
+  }
+
+  @After
+  public void tearDown() {
+    connection.close();
+    server.close();
+  }
+
+  @Test
+  public void shouldBoundDelays() {
+    RetryPolicy policy = RetryPolicy.builder().withBackoff(Duration.ofMillis(50), Duration.ofSeconds(2)).build();
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(policy.delayNanos(1), lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+      assertThat(policy.delayNanos(3), lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200)));
+      assertThat(policy.delayNanos(100), lessThanOrEqualTo(TimeUnit.SECONDS.toNanos(2)));
+    }
+  }
+
+  @Test
+  public void shouldNotRetryByDefault() {
+    assertThat(RetryPolicy.NONE.maxAttempts(), equalTo(1));
+  }
+
+  @Test
+  public void shouldNotRetryWithoutAPolicy() throws Exception {
+    server.respond(429);
+
+    try (Connection plain = Connection.builder().withFaunaRoot(server.root()).withAuthToken("secret").build()) {
+      HttpJsonResponse response = plain.postJson("", query("{\"get\":\"a\"}")).get(5, TimeUnit.SECONDS);
+      assertThat(response.status().code(), equalTo(429));
+    }
+
+    assertThat(server.requests.get(), equalTo(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectInvalidBackoffs() {
+    RetryPolicy.builder().withBackoff(Duration.ofSeconds(2), Duration.ofMillis(50));
+  }
+
+  @Test
+  public void shouldBoundRetriesWithABudget() {
+    RetryBudget budget = new RetryBudget(0.5, 2);
+
+    assertThat(budget.tryWithdraw(), is(true));
+    assertThat(budget.tryWithdraw(), is(true));
+    assertThat(budget.tryWithdraw(), is(false));
+
+    budget.deposit();
+    assertThat(budget.tryWithdraw(), is(false));
+    budget.deposit();
+    assertThat(budget.tryWithdraw(), is(true));
+  }
+
+  @Test
+  public void shouldRetryContendedReads() throws Exception {
+    server.respond(409, 409);
+
+    assertThat(status(query("{\"get\":{\"@ref\":{\"id\":\"1\"}}}")), equalTo(200));
+    assertThat(server.requests.get(), equalTo(3));
+  }
+
+  @Test
+  public void shouldNotRetryContendedWrites() throws Exception {
+    server.respond(409);
+
+    assertThat(status(query("{\"create\":{\"collection\":\"spells\"}}")), equalTo(409));
+    assertThat(server.requests.get(), equalTo(1));
+  }
+
+  @Test
+  public void shouldRetryUnavailableReadsButNotWrites() throws Exception {
+    server.respond(503);
+    assertThat(status(query("{\"get\":\"a\"}")), equalTo(200));
+
+    server.respond(503);
+    assertThat(status(query("{\"delete\":\"a\"}")), equalTo(503));
+    assertThat(server.requests.get(), equalTo(3));
+  }
+
+  @Test
+  public void shouldRetryRateLimitedWrites() throws Exception {
+    server.respond(429);
+
+    assertThat(status(query("{\"create\":{\"collection\":\"spells\"}}")), equalTo(200));
+    assertThat(server.requests.get(), equalTo(2));
+  }
+
+  @Test
+  public void shouldGiveUpAfterTheLastAttempt() throws Exception {
+    server.respond(429, 429, 429, 429);
+
+    assertThat(status(query("{\"get\":\"a\"}")), equalTo(429));
+    assertThat(server.requests.get(), equalTo(3));
+  }
+
+  private JsonNode query(String query) throws Exception {
+    return json.readTree(query);
+  }
+
+  private int status(JsonNode query) throws Exception {
+    HttpJsonResponse response = connection.postJson("", query).get(5, TimeUnit.SECONDS);
+    return response.status().code();
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.faunadb.common;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A local FaunaDB stand-in answering each request with the next scripted status, or <code>200</code>
+ * once the script is over, after the next scripted delay, if any. Requests are served concurrently.
+ */
+final class StubServer implements AutoCloseable {
+
+  static {
+    // Otherwise Nagle's algorithm holds back small responses until the client acknowledges the headers
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  final AtomicInteger requests = new AtomicInteger();
+  private final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<Duration> delays = new ConcurrentLinkedQueue<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final HttpServer server;
+
+  StubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      Integer status = statuses.poll();
+      Duration delay = delays.poll();
+      byte[] body = "{\"resource\":{}}".getBytes(UTF_8);
+
+      if (delay != null) {
+        try {
+          Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      exchange.getRequestBody().close();
+      exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Answers the next requests with the given statuses.
+   */
+  StubServer respond(Integer... codes) {
+    for (Integer code : codes) {
+      statuses.add(code);
+    }
+
+    return this;
+  }
+
+  /**
+   * Delays the answers to the next requests by the given durations.
+   */
+  StubServer delay(Duration... durations) {
+    for (Duration duration : durations) {
+      delays.add(duration);
+    }
+
+    return this;
+  }
+
+  URL root() throws MalformedURLException {
+    return new URL("http://localhost:" + server.getAddress().getPort());
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+}
@@ -0,0 +1,174 @@
+package com.faunadb.common.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HostConnectorSpec {
+
+  private static final InetSocketAddress FIRST = address("10.0.0.1");
+  private static final InetSocketAddress SECOND = address("10.0.0.2");
+  private static final InetSocketAddress THIRD = address("10.0.0.3");
+
+  private final EventLoopGroup group = new NioEventLoopGroup(1);
+  private final HostConnector connector = new HostConnector("localhost", 443, group.next(), HttpTransport.NIO);
+  private final LinkedBlockingQueue<Attempt> attempts = new LinkedBlockingQueue<>();
+
+  @After
+  public void tearDown() throws Exception {
+    connector.close();
+    group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+  }
+
+  @Test
+  public void shouldMoveOnAsSoonAsAnAddressFails() throws Exception {
+    CompletableFuture<Channel> connected = race(FIRST, SECOND);
+
+    long start = System.nanoTime();
+    attempt(FIRST).fail();
+    Attempt second = attempt(SECOND);
+    assertThat(second.startTime - start, lessThan(TimeUnit.MILLISECONDS.toNanos(HostConnector.ATTEMPT_DELAY_MS)));
+
+    Channel channel = second.succeed();
+    assertThat(connected.get(1, TimeUnit.SECONDS), sameInstance(channel));
+    assertThat(channel.isOpen(), is(true));
+  }
+
+  @Test
+  public void shouldOvertakeAStalledAddress() throws Exception {
+    CompletableFuture<Channel> connected = race(FIRST, SECOND);
+
+    Attempt first = attempt(FIRST);
+    Attempt second = attempt(SECOND);
+    assertThat(second.startTime - first.startTime,
+      greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(HostConnector.ATTEMPT_DELAY_MS)));
+
+    Channel winner = second.succeed();
+    assertThat(connected.get(1, TimeUnit.SECONDS), sameInstance(winner));
+
+    // The stalled connection is closed once it succeeds too late
+    Channel loser = first.succeed();
+    assertThat(loser.isOpen(), is(false));
+    assertThat(winner.isOpen(), is(true));
+  }
+
+  @Test
+  public void shouldNotStartMoreAttemptsOnceConnected() throws Exception {
+    CompletableFuture<Channel> connected = race(FIRST, SECOND, THIRD);
+
+    attempt(FIRST).succeed();
+    connected.get(1, TimeUnit.SECONDS);
+
+    Thread.sleep(HostConnector.ATTEMPT_DELAY_MS * 2);
+    assertThat(attempts.isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldFailOnceEveryAddressFailed() throws Exception {
+    CompletableFuture<Channel> connected = race(FIRST, SECOND);
+
+    Attempt first = attempt(FIRST);
+    ConnectException second = attempt(SECOND).fail();
+    assertThat(connected.isDone(), is(false));
+
+    ConnectException last = first.fail();
+
+    try {
+      connected.get(1, TimeUnit.SECONDS);
+      fail("Every address failed");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), anyOf(sameInstance(last), sameInstance(second)));
+    }
+  }
+
+  @Test
+  public void shouldInterleaveFamiliesAndRotateAddresses() throws Exception {
+    InetAddress a = InetAddress.getByName("10.0.0.1");
+    InetAddress b = InetAddress.getByName("10.0.0.2");
+    InetAddress c = InetAddress.getByName("fd00::1");
+    List<InetAddress> resolved = Arrays.asList(a, b, c);
+
+    assertThat(connector.order(resolved), equalTo(addresses(a, c, b)));
+    assertThat(connector.order(resolved), equalTo(addresses(b, c, a)));
+  }
+
+  private CompletableFuture<Channel> race(InetSocketAddress... addresses) {
+    CompletableFuture<Channel> connected = new CompletableFuture<>();
+    Function<SocketAddress, CompletableFuture<Channel>> connect = address -> {
+      Attempt attempt = new Attempt(address);
+      attempts.add(attempt);
+      return attempt.future;
+    };
+
+    connector.race(Arrays.asList(addresses), connect, connected);
+    return connected;
+  }
+
+  /**
+   * Waits for the next connection attempt, which must go to the given address.
+   */
+  private Attempt attempt(SocketAddress address) throws InterruptedException {
+    Attempt attempt = attempts.poll(1, TimeUnit.SECONDS);
+    assertThat(attempt, notNullValue());
+    assertThat(attempt.address, equalTo(address));
+    return attempt;
+  }
+
+  private static List<InetSocketAddress> addresses(InetAddress... addresses) {
+    return Arrays.stream(addresses).map(address -> new InetSocketAddress(address, 443)).collect(Collectors.toList());
+  }
+
+  private static InetSocketAddress address(String ip) {
+    try {
+      return new InetSocketAddress(InetAddress.getByName(ip), 443);
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static final class Attempt {
+
+    final SocketAddress address;
+    final long startTime = System.nanoTime();
+    final CompletableFuture<Channel> future = new CompletableFuture<>();
+
+    Attempt(SocketAddress address) {
+      this.address = address;
+    }
+
+    Channel succeed() {
+      Channel channel = new EmbeddedChannel();
+      future.complete(channel);
+      return channel;
+    }
+
+    ConnectException fail() {
+      ConnectException error = new ConnectException("Connection refused: " + address);
+      future.completeExceptionally(error);
+      return error;
+    }
+  }
+
+}
@@ -0,0 +1,238 @@
+package com.faunadb.common.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class Http2Spec {
+
+  private Server server;
+  private HttpClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void shouldNegotiateHttp2() throws Exception {
+    server = new Server(ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+    client = newClient(HttpClient.Protocol.HTTP_2);
+
+    assertThat(body(client.sendRequest(request())), equalTo(ApplicationProtocolNames.HTTP_2));
+    assertThat(body(client.sendRequest(request())), equalTo(ApplicationProtocolNames.HTTP_2));
+  }
+
+  @Test
+  public void shouldFallBackToHttp1WhenTheServerDoesNotSupportHttp2() throws Exception {
+    server = new Server(ApplicationProtocolNames.HTTP_1_1);
+    client = newClient(HttpClient.Protocol.HTTP_2);
+
+    assertThat(body(client.sendRequest(request())), equalTo(ApplicationProtocolNames.HTTP_1_1));
+  }
+
+  @Test
+  public void shouldUseHttp1UnlessHttp2IsRequested() throws Exception {
+    server = new Server(ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+    client = newClient(HttpClient.Protocol.HTTP_1_1);
+
+    assertThat(body(client.sendRequest(request())), equalTo(ApplicationProtocolNames.HTTP_1_1));
+  }
+
+  @Test
+  public void shouldNotOpenMoreStreamsThanTheServerAllows() throws Exception {
+    server = new Server(Http2Settings.defaultSettings().maxConcurrentStreams(2), 100,
+      ApplicationProtocolNames.HTTP_2);
+    client = HttpClient.builder()
+      .withEndpoint(new URL("https://localhost:" + server.port()))
+      .withProtocol(HttpClient.Protocol.HTTP_2)
+      .withMaxConnections(1)
+      .build();
+
+    List<CompletableFuture<FullHttpResponse>> responses = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      responses.add(client.sendRequest(request()));
+    }
+
+    for (CompletableFuture<FullHttpResponse> response : responses) {
+      assertThat(body(response), equalTo(ApplicationProtocolNames.HTTP_2));
+    }
+
+    assertThat(server.maxActive(), lessThanOrEqualTo(2));
+  }
+
+  private HttpClient newClient(HttpClient.Protocol protocol) throws Exception {
+    return HttpClient.builder()
+      .withEndpoint(new URL("https://localhost:" + server.port()))
+      .withProtocol(protocol)
+      .build();
+  }
+
+  private static FullHttpRequest request() {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/", Unpooled.buffer(0));
+  }
+
+  private static String body(CompletableFuture<FullHttpResponse> future) throws Exception {
+    FullHttpResponse response = future.get(5, TimeUnit.SECONDS);
+
+    try {
+      return response.content().toString(UTF_8);
+    } finally {
+      response.release();
+    }
+  }
+
+  /**
+   * A TLS server negotiating one of the given protocols through ALPN, and answering every request
+   * with the protocol it was received over, after an optional delay.
+   */
+  private static final class Server implements AutoCloseable {
+
+    private final SelfSignedCertificate certificate = new SelfSignedCertificate("localhost");
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final Http2Settings settings;
+    private final long delayMs;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final Channel channel;
+
+    Server(String... protocols) throws Exception {
+      this(Http2Settings.defaultSettings(), 0, protocols);
+    }
+
+    Server(Http2Settings settings, long delayMs, String... protocols) throws Exception {
+      this.settings = settings;
+      this.delayMs = delayMs;
+
+      SslContext context = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey())
+        .sslProvider(HttpClient.sslProvider(null))
+        .applicationProtocolConfig(new ApplicationProtocolConfig(
+          ApplicationProtocolConfig.Protocol.ALPN,
+          ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+          ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+          protocols))
+        .build();
+
+      channel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            ch.pipeline().addLast(context.newHandler(ch.alloc()), new Negotiator());
+          }
+        })
+        .bind("localhost", 0).sync().channel();
+    }
+
+    int port() {
+      return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    /**
+     * @return the largest number of requests the server was answering at once
+     */
+    int maxActive() {
+      return maxActive.get();
+    }
+
+    @Override
+    public void close() throws Exception {
+      channel.close().sync();
+      group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+      certificate.delete();
+    }
+
+    private final class Negotiator extends ApplicationProtocolNegotiationHandler {
+
+      Negotiator() {
+        super(ApplicationProtocolNames.HTTP_1_1);
+      }
+
+      @Override
+      protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+        ChannelPipeline p = ctx.pipeline();
+
+        if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+          p.addLast(Http2FrameCodecBuilder.forServer().initialSettings(settings).build());
+          p.addLast(new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel stream) {
+              stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true),
+                new HttpObjectAggregator(64 * 1024), new Responder(protocol));
+            }
+          }));
+        } else {
+          p.addLast(new HttpServerCodec(), new HttpObjectAggregator(64 * 1024), new Responder(protocol));
+        }
+      }
+    }
+
+    private final class Responder extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+      private final String protocol;
+
+      Responder(String protocol) {
+        this.protocol = protocol;
+      }
+
+      @Override
+      protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+          Unpooled.copiedBuffer(protocol, UTF_8));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        ctx.executor().schedule(() -> {
+          active.decrementAndGet();
+          ctx.writeAndFlush(response);
+        }, delayMs, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package com.faunadb.common.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HttpChannelPoolSpec {
+
+  private final EventExecutorGroup executor = new DefaultEventExecutorGroup(1);
+  private final List<EmbeddedChannel> channels = new ArrayList<>();
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+  }
+
+  @Test
+  public void shouldTimeOutAcquiresWaitingForAFullPool() throws Exception {
+    HttpChannelPool pool = newPool(1, 1, 50, -1, -1);
+    pool.acquire().get();
+
+    Throwable error = failure(pool.acquire());
+    assertThat(error, instanceOf(TimeoutException.class));
+    assertThat(pool.pendingAcquires(), equalTo(0));
+  }
+
+  @Test
+  public void shouldRejectAcquiresBeyondThePendingLimit() throws Exception {
+    HttpChannelPool pool = newPool(1, 1, -1, -1, -1);
+    pool.acquire().get();
+
+    CompletableFuture<Channel> waiting = pool.acquire();
+    Throwable error = failure(pool.acquire());
+
+    assertThat(error, instanceOf(IllegalStateException.class));
+    assertThat(waiting.isDone(), is(false));
+    assertThat(pool.pendingAcquires(), equalTo(1));
+  }
+
+  @Test
+  public void shouldHandReleasedChannelsToWaitersInArrivalOrder() throws Exception {
+    HttpChannelPool pool = newPool(1, 2, -1, -1, -1);
+    Channel channel = pool.acquire().get();
+
+    CompletableFuture<Channel> first = pool.acquire();
+    CompletableFuture<Channel> second = pool.acquire();
+
+    pool.release(channel);
+    assertThat(first.getNow(null), sameInstance(channel));
+    assertThat(second.isDone(), is(false));
+
+    pool.release(channel);
+    assertThat(second.getNow(null), sameInstance(channel));
+    assertThat(channels.size(), equalTo(1));
+  }
+
+  @Test
+  public void shouldReuseReleasedChannels() throws Exception {
+    HttpChannelPool pool = newPool(2, 0, -1, -1, -1);
+    Channel channel = pool.acquire().get();
+    pool.release(channel);
+
+    assertThat(pool.idle(), equalTo(1));
+    assertThat(pool.acquire().get(), sameInstance(channel));
+    assertThat(pool.active(), equalTo(1));
+  }
+
+  @Test
+  public void shouldEvictIdleChannels() throws Exception {
+    HttpChannelPool pool = newPool(1, 0, -1, 100, -1);
+    Channel channel = pool.acquire().get();
+    pool.release(channel);
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (channel.isOpen() && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+
+    assertThat(channel.isOpen(), is(false));
+    assertThat(pool.idle(), equalTo(0));
+  }
+
+  @Test
+  public void shouldRetireChannelsPastTheirLifetime() throws Exception {
+    HttpChannelPool pool = newPool(1, 0, -1, -1, 50);
+    Channel channel = pool.acquire().get();
+
+    Thread.sleep(100);
+    pool.release(channel);
+    assertThat(channel.isOpen(), is(false));
+
+    Channel next = pool.acquire().get();
+    assertThat(next, not(sameInstance(channel)));
+    assertThat(next.isOpen(), is(true));
+  }
+
+  @Test
+  public void shouldNotReuseRetiredChannels() throws Exception {
+    HttpChannelPool pool = newPool(1, 0, -1, -1, -1);
+    Channel channel = pool.acquire().get();
+
+    HttpChannelPool.retire(channel);
+    pool.release(channel);
+
+    assertThat(channel.isOpen(), is(false));
+    assertThat(pool.acquire().get(), not(sameInstance(channel)));
+  }
+
+  @Test
+  public void shouldCloseChannelsReleasedAfterClose() throws Exception {
+    HttpChannelPool pool = newPool(1, 1, -1, -1, -1);
+    Channel channel = pool.acquire().get();
+    CompletableFuture<Channel> waiting = pool.acquire();
+
+    pool.close();
+    assertThat(failure(waiting), instanceOf(IllegalStateException.class));
+    assertThat(channel.isOpen(), is(true));
+
+    pool.release(channel);
+    assertThat(channel.isOpen(), is(false));
+    assertThat(failure(pool.acquire()), instanceOf(IllegalStateException.class));
+  }
+
+  private HttpChannelPool newPool(int maxConnections, int maxPendingAcquires, long acquireTimeout,
+                                  long idleTimeout, long maxLifetime) {
+    return new HttpChannelPool(this::connect, executor, false, maxConnections, maxPendingAcquires,
+      acquireTimeout, 0, maxConnections, idleTimeout, maxLifetime);
+  }
+
+  private CompletableFuture<Channel> connect() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    channels.add(channel);
+    return CompletableFuture.completedFuture(channel);
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+
+    fail("Expected the future to fail");
+    return null;
+  }
+
+}
@@ -0,0 +1,169 @@
+package com.faunadb.common.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HttpClientSpec {
+
+  private StubServer server;
+  private HttpClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubServer();
+    client = HttpClient.builder()
+      .withEndpoint(new URL("http://localhost:" + server.port()))
+      .withMaxConnections(1)
+      .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void shouldResendIdempotentRequestsLostOnAStaleConnection() throws Exception {
+    assertThat(body(client.sendRequest(request(HttpMethod.GET))), equalTo("1"));
+    assertThat(body(client.sendRequest(request(HttpMethod.GET))), equalTo("2"));
+    assertThat(server.connections.get(), equalTo(2));
+  }
+
+  @Test
+  public void shouldResendRequestsFlaggedAsIdempotent() throws Exception {
+    assertThat(body(client.sendRequest(request(HttpMethod.POST))), equalTo("1"));
+    assertThat(body(client.sendRequest(request(HttpMethod.POST), null, null, true)), equalTo("2"));
+  }
+
+  @Test
+  public void shouldNotResendWrittenRequestsThatAreNotIdempotent() throws Exception {
+    assertThat(body(client.sendRequest(request(HttpMethod.POST))), equalTo("1"));
+
+    try {
+      client.sendRequest(request(HttpMethod.POST)).get(5, TimeUnit.SECONDS);
+      fail("Expected the request to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(StaleChannelException.class));
+      assertThat(((StaleChannelException) e.getCause()).written, is(true));
+    }
+
+    assertThat(server.connections.get(), equalTo(1));
+  }
+
+  private static FullHttpRequest request(HttpMethod method) {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, "/", Unpooled.copiedBuffer("{}", UTF_8));
+  }
+
+  private static String body(CompletableFuture<FullHttpResponse> future) throws Exception {
+    FullHttpResponse response = future.get(5, TimeUnit.SECONDS);
+
+    try {
+      return response.content().toString(UTF_8);
+    } finally {
+      response.release();
+    }
+  }
+
+  /**
+   * Answers the first request of the first connection, then reads the next one and closes the connection
+   * without answering. Other connections answer every request. Bodies count the requests answered.
+   */
+  private static final class StubServer implements AutoCloseable {
+
+    final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger responses = new AtomicInteger();
+    private final ServerSocket socket = new ServerSocket(0);
+    private final Thread acceptor = new Thread(this::accept, "stub-server");
+
+    StubServer() throws IOException {
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+
+    int port() {
+      return socket.getLocalPort();
+    }
+
+    private void accept() {
+      try {
+        while (true) {
+          Socket connection = socket.accept();
+          boolean first = connections.incrementAndGet() == 1;
+          Thread handler = new Thread(() -> serve(connection, first), "stub-connection");
+          handler.setDaemon(true);
+          handler.start();
+        }
+      } catch (IOException ignore) {}
+    }
+
+    private void serve(Socket connection, boolean first) {
+      try (Socket s = connection) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), UTF_8));
+        OutputStream out = s.getOutputStream();
+
+        for (int served = 0; readRequest(in); served++) {
+          if (first && served == 1) {
+            return;
+          }
+
+          byte[] body = Integer.toString(responses.incrementAndGet()).getBytes(UTF_8);
+          out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(UTF_8));
+          out.write(body);
+          out.flush();
+        }
+      } catch (IOException ignore) {}
+    }
+
+    private static boolean readRequest(BufferedReader in) throws IOException {
+      int contentLength = 0;
+      String line = in.readLine();
+
+      if (line == null) {
+        return false;
+      }
+
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        if (line.toLowerCase().startsWith("content-length:")) {
+          contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+        }
+      }
+
+      for (int i = 0; i < contentLength; i++) {
+        in.read();
+      }
+
+      return line != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+}
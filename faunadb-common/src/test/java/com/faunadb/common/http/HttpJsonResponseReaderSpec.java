@@ -0,0 +1,108 @@
+package com.faunadb.common.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HttpJsonResponseReaderSpec {
+
+  private static final ObjectMapper json = new ObjectMapper();
+  private static final String BODY =
+    "{\"resource\":{\"ref\":{\"@ref\":{\"id\":\"42\"}},\"ts\":1580000000000000,\"data\":[1,2.5,true,false,null,\"\u00e9\u20ac\"]," +
+      "\"big\":123456789012345678901234567890,\"empty\":{},\"none\":[]}}";
+
+  @Test
+  public void shouldParseABodySplitAcrossChunks() throws Exception {
+    byte[] bytes = BODY.getBytes(UTF_8);
+
+    for (int size : new int[] { 1, 3, 7, bytes.length }) {
+      HttpJsonResponse response = read(HttpResponseStatus.OK, bytes, size, false);
+
+      assertThat(response.status(), equalTo(HttpResponseStatus.OK));
+      assertThat(response.body(), equalTo(json.readTree(BODY)));
+    }
+  }
+
+  @Test
+  public void shouldParseDirectBuffers() throws Exception {
+    HttpJsonResponse response = read(HttpResponseStatus.OK, BODY.getBytes(UTF_8), 5, true);
+    assertThat(response.body(), equalTo(json.readTree(BODY)));
+  }
+
+  @Test
+  public void shouldKeepTheTypeOfNumbers() throws Exception {
+    JsonNode body = read(HttpResponseStatus.OK, BODY.getBytes(UTF_8), 4, false).body().get("resource");
+
+    assertThat(body.get("ts").isLong(), is(true));
+    assertThat(body.get("data").get(0).isInt(), is(true));
+    assertThat(body.get("data").get(1).doubleValue(), equalTo(2.5));
+    assertThat(body.get("big").bigIntegerValue(), equalTo(new BigInteger("123456789012345678901234567890")));
+  }
+
+  @Test
+  public void shouldLeaveOutInvalidBodies() throws Exception {
+    HttpJsonResponse response = read(HttpResponseStatus.BAD_GATEWAY, "<html>Bad Gateway</html>".getBytes(UTF_8), 4, false);
+
+    assertThat(response.status(), equalTo(HttpResponseStatus.BAD_GATEWAY));
+    assertThat(response.body(), nullValue());
+  }
+
+  @Test
+  public void shouldLeaveOutTruncatedBodies() throws Exception {
+    byte[] bytes = "{\"resource\":[1,2".getBytes(UTF_8);
+    assertThat(read(HttpResponseStatus.OK, bytes, 4, false).body(), nullValue());
+  }
+
+  @Test
+  public void shouldLeaveOutEmptyBodies() throws Exception {
+    assertThat(read(HttpResponseStatus.NO_CONTENT, new byte[0], 1, false).body(), nullValue());
+  }
+
+  @Test
+  public void shouldAddTrailingHeaders() throws Exception {
+    HttpJsonResponseReader reader = new HttpJsonResponseReader();
+    reader.start(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    reader.content(Unpooled.copiedBuffer("{}", UTF_8));
+
+    LastHttpContent last = new DefaultLastHttpContent();
+    last.trailingHeaders().add("X-Txn-Time", "1580000000000000");
+
+    HttpJsonResponse response = reader.finish(last);
+    assertThat(response.headers().get("X-Txn-Time"), equalTo("1580000000000000"));
+    assertThat(response.body().size(), equalTo(0));
+  }
+
+  private static HttpJsonResponse read(HttpResponseStatus status, byte[] bytes, int chunkSize, boolean direct)
+    throws Exception {
+    HttpJsonResponseReader reader = new HttpJsonResponseReader();
+    reader.start(new DefaultHttpResponse(HttpVersion.HTTP_1_1, status));
+
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, bytes.length - offset);
+      ByteBuf chunk = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+      chunk.writeBytes(bytes, offset, length);
+
+      try {
+        reader.content(chunk);
+      } finally {
+        chunk.release();
+      }
+    }
+
+    return reader.finish(LastHttpContent.EMPTY_LAST_CONTENT);
+  }
+
+}
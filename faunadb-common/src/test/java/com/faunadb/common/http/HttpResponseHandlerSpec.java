@@ -0,0 +1,194 @@
+package com.faunadb.common.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HttpResponseHandlerSpec {
+
+  private final EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseHandler());
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void shouldPipelineRequests() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+    PendingResponse<FullHttpResponse> second = send("/second");
+    PendingResponse<FullHttpResponse> third = send("/third");
+
+    assertThat(sentUri(), equalTo("/first"));
+    assertThat(sentUri(), equalTo("/second"));
+    assertThat(sentUri(), equalTo("/third"));
+    assertThat(first.written && second.written && third.written, is(true));
+    assertThat(first.future.isDone() || second.future.isDone() || third.future.isDone(), is(false));
+  }
+
+  @Test
+  public void shouldMatchResponsesToRequestsInOrder() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+    PendingResponse<FullHttpResponse> second = send("/second");
+    PendingResponse<FullHttpResponse> third = send("/third");
+
+    channel.writeInbound(response("1"));
+    assertThat(body(first), equalTo("1"));
+    assertThat(second.future.isDone(), is(false));
+
+    channel.writeInbound(response("2"), response("3"));
+    assertThat(body(second), equalTo("2"));
+    assertThat(body(third), equalTo("3"));
+    assertThat(channel.isOpen(), is(true));
+  }
+
+  @Test
+  public void shouldReadChunkedResponses() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+    PendingResponse<FullHttpResponse> second = send("/second");
+
+    channel.writeInbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    channel.writeInbound(new DefaultHttpContent(Unpooled.copiedBuffer("chu", UTF_8)));
+    assertThat(first.future.isDone(), is(false));
+
+    channel.writeInbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("nked", UTF_8)));
+    channel.writeInbound(response("next"));
+
+    assertThat(body(first), equalTo("chunked"));
+    assertThat(body(second), equalTo("next"));
+  }
+
+  @Test
+  public void shouldDrainResponsesOfAbandonedRequests() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+    PendingResponse<FullHttpResponse> second = send("/second");
+
+    first.future.cancel(false);
+    channel.writeInbound(response("1"), response("2"));
+
+    assertThat(body(second), equalTo("2"));
+  }
+
+  @Test
+  public void shouldCloseTheChannelAfterAConnectionCloseResponse() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+
+    FullHttpResponse response = response("bye");
+    response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+    channel.writeInbound(response);
+
+    assertThat(body(first), equalTo("bye"));
+    assertThat(channel.isOpen(), is(false));
+  }
+
+  @Test
+  public void shouldCloseTheChannelOnUnexpectedResponses() {
+    channel.writeInbound(response("unexpected"));
+    assertThat(channel.isOpen(), is(false));
+  }
+
+  @Test
+  public void shouldFailPendingRequestsWhenTheChannelCloses() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+
+    channel.close();
+
+    assertThat(first.future.isCompletedExceptionally(), is(true));
+    assertThat(first.future.handle((r, e) -> e).join(), not(instanceOf(StaleChannelException.class)));
+  }
+
+  @Test
+  public void shouldFlagWrittenRequestsLostOnAStaleChannel() {
+    PendingResponse<FullHttpResponse> first = send("/first");
+    PendingResponse<FullHttpResponse> second = send("/second");
+
+    channel.writeInbound(response("1"));
+    channel.close();
+
+    assertThat(body(first), equalTo("1"));
+    Throwable error = second.future.handle((r, e) -> e).join();
+    assertThat(error, instanceOf(StaleChannelException.class));
+    assertThat(((StaleChannelException) error).written, is(true));
+  }
+
+  @Test
+  public void shouldFlagUnwrittenRequestsLostOnAStaleChannel() {
+    EmbeddedChannel failing = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+      @Override
+      public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        ReferenceCountUtil.release(msg);
+        promise.setFailure(new IOException("Connection reset by peer"));
+      }
+    }, new HttpResponseHandler());
+
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    PendingResponse<FullHttpResponse> pending = new PendingResponse<>(request,
+      new FullHttpResponseReader(failing.alloc(), 1024), new CompletableFuture<>(), null, null);
+    pending.reused = true;
+    failing.writeAndFlush(pending);
+
+    Throwable error = pending.future.handle((r, e) -> e).join();
+    assertThat(error, instanceOf(StaleChannelException.class));
+    assertThat(((StaleChannelException) error).written, is(false));
+    failing.finishAndReleaseAll();
+  }
+
+  private PendingResponse<FullHttpResponse> send(String uri) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    PendingResponse<FullHttpResponse> pending = new PendingResponse<>(request,
+      new FullHttpResponseReader(channel.alloc(), 1024), new CompletableFuture<>(), null, null);
+
+    channel.writeOutbound(pending);
+    return pending;
+  }
+
+  private String sentUri() {
+    FullHttpRequest request = channel.readOutbound();
+
+    try {
+      return request.uri();
+    } finally {
+      request.release();
+    }
+  }
+
+  static FullHttpResponse response(String body) {
+    return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer(body, UTF_8));
+  }
+
+  static String body(PendingResponse<FullHttpResponse> pending) {
+    FullHttpResponse response = pending.future.getNow(null);
+    assertThat(response, notNullValue());
+
+    try {
+      return response.content().toString(UTF_8);
+    } finally {
+      response.release();
+    }
+  }
+
+}
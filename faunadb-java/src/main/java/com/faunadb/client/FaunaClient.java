@@ -10,18 +10,33 @@ import com.faunadb.client.types.Field;
 import com.faunadb.client.types.Value;
 import com.faunadb.common.Connection;
 import com.faunadb.common.Connection.JvmDriver;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.handler.codec.http.FullHttpResponse;
+import com.faunadb.common.CircuitBreakerPolicy;
+import com.faunadb.common.CircuitOpenException;
+import com.faunadb.common.ConcurrencyLimitException;
+import com.faunadb.common.ConcurrencyLimitPolicy;
+import com.faunadb.common.HedgePolicy;
+import com.faunadb.common.QueryStats;
+import com.faunadb.common.RequestListener;
+import com.faunadb.common.RequestLogPolicy;
+import com.faunadb.common.RetryPolicy;
+import com.faunadb.common.SessionCache;
+import com.faunadb.common.SessionCachePolicy;
+import com.faunadb.common.http.HttpJsonResponse;
+import io.netty.channel.EventLoopGroup;
 
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
 import static com.faunadb.client.types.Codec.VALUE;
@@ -73,8 +88,18 @@ public class FaunaClient implements AutoCloseable {
   public static final class Builder {
 
     private String secret;
-    private URL endpoint;
+    private List<URL> endpoints;
     private MetricRegistry registry;
+    private String metricsPrefix;
+    private EventLoopGroup eventLoopGroup;
+    private RetryPolicy retryPolicy;
+    private HedgePolicy hedgePolicy;
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    private ConcurrencyLimitPolicy concurrencyLimitPolicy;
+    private Executor completionExecutor;
+    private RequestListener requestListener;
+    private RequestLogPolicy requestLogPolicy;
+    private SessionCachePolicy sessionCachePolicy = SessionCachePolicy.DEFAULT;
 
     private Builder() {
     }
@@ -98,7 +123,24 @@ public class FaunaClient implements AutoCloseable {
      * @throws MalformedURLException if the endpoint is invalid
      */
     public Builder withEndpoint(String endpoint) throws MalformedURLException {
-      this.endpoint = new URL(endpoint);
+      return withEndpoints(endpoint);
+    }
+
+    /**
+     * Sets several FaunaDB endpoint urls for the {@link FaunaClient} instance. Queries are balanced over
+     * the endpoints, avoiding the ones that are failing.
+     *
+     * @param endpoints the root endpoint URLs
+     * @return this {@link Builder} object
+     * @throws MalformedURLException if any endpoint is invalid
+     */
+    public Builder withEndpoints(String... endpoints) throws MalformedURLException {
+      List<URL> urls = new ArrayList<>(endpoints.length);
+      for (String endpoint : endpoints) {
+        urls.add(new URL(endpoint));
+      }
+
+      this.endpoints = urls;
       return this;
     }
 
@@ -114,6 +156,135 @@ public class FaunaClient implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets a {@link MetricRegistry} that the {@link FaunaClient} will use to register and track Connection-level
+     * statistics, named with the given prefix instead of <code>fauna</code>. See
+     * {@link Connection.Builder#withMetrics(MetricRegistry, String)} for the metrics tracked.
+     *
+     * @param registry the {@link MetricRegistry} instance.
+     * @param prefix the prefix of the metric names
+     * @return this {@link Builder} object
+     */
+    public Builder withMetrics(MetricRegistry registry, String prefix) {
+      this.registry = registry;
+      this.metricsPrefix = prefix;
+      return this;
+    }
+
+    /**
+     * Sets the {@link EventLoopGroup} performing the client I/O, so that several clients share the same threads,
+     * for instance {@link com.faunadb.common.http.SharedEventLoopGroup#get()}. The group is not shut down when
+     * the client is closed.
+     *
+     * @param eventLoopGroup the {@link EventLoopGroup} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withEventLoopGroup(EventLoopGroup eventLoopGroup) {
+      this.eventLoopGroup = eventLoopGroup;
+      return this;
+    }
+
+    /**
+     * Enables retries of failed queries. Queries that write are only retried when FaunaDB did not
+     * process them. Disabled by default.
+     *
+     * @param retryPolicy the {@link RetryPolicy} to use, for instance {@link RetryPolicy#DEFAULT}
+     * @return this {@link Builder} object
+     */
+    public Builder withRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Enables hedging of queries that do not write: when such a query is slower than most, it is sent a
+     * second time, and the first response is used. Disabled by default.
+     *
+     * @param hedgePolicy the {@link HedgePolicy} to use, for instance {@link HedgePolicy#DEFAULT}
+     * @return this {@link Builder} object
+     */
+    public Builder withHedgePolicy(HedgePolicy hedgePolicy) {
+      this.hedgePolicy = hedgePolicy;
+      return this;
+    }
+
+    /**
+     * Enables a circuit breaker for each endpoint. While an endpoint is failing, its breaker opens and
+     * queries fail right away with a {@link CircuitOpenException}. Disabled by default.
+     *
+     * @param circuitBreakerPolicy the {@link CircuitBreakerPolicy} to use, for instance {@link CircuitBreakerPolicy#DEFAULT}
+     * @return this {@link Builder} object
+     */
+    public Builder withCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+      this.circuitBreakerPolicy = circuitBreakerPolicy;
+      return this;
+    }
+
+    /**
+     * Enables an adaptive limit on the outstanding queries of the client and its session clients. Queries
+     * beyond the limit wait in a bounded queue, or fail with a {@link ConcurrencyLimitException}. Disabled by default.
+     *
+     * @param concurrencyLimitPolicy the {@link ConcurrencyLimitPolicy} to use, for instance {@link ConcurrencyLimitPolicy#DEFAULT}
+     * @return this {@link Builder} object
+     */
+    public Builder withConcurrencyLimitPolicy(ConcurrencyLimitPolicy concurrencyLimitPolicy) {
+      this.concurrencyLimitPolicy = concurrencyLimitPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the executor completing the futures returned by the client, which runs the callbacks attached
+     * to them. Defaults to {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     *
+     * @param completionExecutor the {@link Executor} to use, {@link Connection#DIRECT_EXECUTOR} to complete
+     *                           futures on the I/O threads, in which case callbacks must not block
+     * @return this {@link Builder} object
+     */
+    public Builder withCompletionExecutor(Executor completionExecutor) {
+      this.completionExecutor = completionExecutor;
+      return this;
+    }
+
+    /**
+     * Sets a listener notified of the lifecycle of every request sent by the client and its session clients,
+     * for instance to bridge them to a tracing system. See {@link RequestListener}. Disabled by default.
+     *
+     * @param requestListener the {@link RequestListener} to notify
+     * @return this {@link Builder} object
+     */
+    public Builder withRequestListener(RequestListener requestListener) {
+      this.requestListener = requestListener;
+      return this;
+    }
+
+    /**
+     * Sets which fraction of the requests is logged, how much of their bodies, and how often errors are
+     * summed up per endpoint. Defaults to {@link RequestLogPolicy#DEFAULT}.
+     *
+     * @param requestLogPolicy the {@link RequestLogPolicy} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withRequestLogPolicy(RequestLogPolicy requestLogPolicy) {
+      this.requestLogPolicy = requestLogPolicy;
+      return this;
+    }
+
+    /**
+     * Sets how many session clients returned by {@link FaunaClient#cachedSessionClient(String)} are kept, and
+     * for how long. Defaults to {@link SessionCachePolicy#DEFAULT}.
+     *
+     * @param sessionCachePolicy the {@link SessionCachePolicy} to use
+     * @return this {@link Builder} object
+     */
+    public Builder withSessionCachePolicy(SessionCachePolicy sessionCachePolicy) {
+      if (sessionCachePolicy == null) {
+        throw new IllegalArgumentException("sessionCachePolicy must not be null");
+      }
+
+      this.sessionCachePolicy = sessionCachePolicy;
+      return this;
+    }
+
     /**
      * Returns a newly constructed {@link FaunaClient} with configuration based on the settings of this {@link Builder}.
      * @return {@link FaunaClient}
@@ -121,20 +292,47 @@ public class FaunaClient implements AutoCloseable {
     public FaunaClient build() {
       Connection.Builder builder = Connection.builder()
         .withAuthToken(secret)
-        .withFaunaRoot(endpoint)
         .withJvmDriver(JvmDriver.JAVA);
 
-      if (registry != null) builder.withMetrics(registry);
+      if (endpoints != null) builder.withFaunaRoots(endpoints);
 
-      return new FaunaClient(builder.build());
+      if (registry != null) {
+        if (metricsPrefix != null) builder.withMetrics(registry, metricsPrefix);
+        else builder.withMetrics(registry);
+      }
+      if (eventLoopGroup != null) builder.withEventLoopGroup(eventLoopGroup);
+      if (retryPolicy != null) builder.withRetryPolicy(retryPolicy);
+      if (hedgePolicy != null) builder.withHedgePolicy(hedgePolicy);
+      builder.withCircuitBreakerPolicy(circuitBreakerPolicy);
+      builder.withConcurrencyLimitPolicy(concurrencyLimitPolicy);
+      if (completionExecutor != null) builder.withCompletionExecutor(completionExecutor);
+      builder.withRequestListener(requestListener);
+      if (requestLogPolicy != null) builder.withRequestLogPolicy(requestLogPolicy);
+
+      return new FaunaClient(builder.build(), sessionCachePolicy);
     }
   }
 
-  private final ObjectMapper json = new ObjectMapper().registerModule(new Jdk8Module());
+  private static final ObjectMapper json = new ObjectMapper().registerModule(new Jdk8Module());
+
   private final Connection connection;
+  private final SessionCache<FaunaClient> sessions;
+  private final boolean ownsSessions;
+  private final boolean cached;
 
-  private FaunaClient(Connection connection) {
+  private FaunaClient(Connection connection, SessionCachePolicy sessionCachePolicy) {
     this.connection = connection;
+    this.sessions = new SessionCache<>(sessionCachePolicy,
+      secret -> new FaunaClient(connection.newSessionConnection(secret), this, true), FaunaClient::release);
+    this.ownsSessions = true;
+    this.cached = false;
+  }
+
+  private FaunaClient(Connection connection, FaunaClient parent, boolean cached) {
+    this.connection = connection;
+    this.sessions = parent.sessions;
+    this.ownsSessions = false;
+    this.cached = cached;
   }
 
   /**
@@ -146,14 +344,50 @@ public class FaunaClient implements AutoCloseable {
    * @return a new {@link FaunaClient}
    */
   public FaunaClient newSessionClient(String secret) {
-    return new FaunaClient(connection.newSessionConnection(secret));
+    return new FaunaClient(connection.newSessionConnection(secret), this, false);
+  }
+
+  /**
+   * Returns the session client of a secret, kept for later calls with the same secret. Unlike
+   * {@link #newSessionClient(String)}, switching between the secrets of many tenants costs a lookup
+   * once their sessions are open. Session clients are kept according to the {@link SessionCachePolicy}
+   * of the client, shared with its session clients, and closed along with it.
+   * <p>
+   * Closing the returned session client has no effect: it stays usable, and is only closed once
+   * invalidated, evicted, or along with this client.
+   *
+   * @param secret user secret for the session client
+   * @return a {@link FaunaClient} authenticated with the secret
+   */
+  public FaunaClient cachedSessionClient(String secret) {
+    return sessions.get(secret);
+  }
+
+  /**
+   * Closes the session client kept for a secret, for instance once the secret has been revoked.
+   *
+   * @param secret user secret of the session client
+   */
+  public void invalidateSessionClient(String secret) {
+    sessions.invalidate(secret);
   }
 
   /**
-   * Releases any resources being held by the {@link FaunaClient} instance.
+   * Releases any resources being held by the {@link FaunaClient} instance. Does nothing for a session
+   * client returned by {@link #cachedSessionClient(String)}, which its cache closes instead.
    */
   @Override
   public void close() {
+    if (!cached) {
+      release();
+    }
+  }
+
+  private void release() {
+    if (ownsSessions) {
+      sessions.close();
+    }
+
     connection.close();
   }
 
@@ -171,7 +405,48 @@ public class FaunaClient implements AutoCloseable {
    * @see com.faunadb.client.query.Language
    */
   public CompletableFuture<Value> query(Expr expr) {
-    return performRequest(json.valueToTree(expr));
+    return performRequest(json.valueToTree(expr), null, this::handleResponse);
+  }
+
+  /**
+   * Issues a Query to FaunaDB, which must complete within the given time.
+   * <p>
+   * The time left is sent to FaunaDB as the query timeout, and the request is abandoned once the time
+   * runs out: the returned future then fails with a {@link TimeoutException}. Cancelling the returned
+   * future also abandons the request, releasing its connection right away.
+   *
+   * @param expr the query to be executed.
+   * @param timeout the time allowed for the query.
+   * @return a {@link CompletableFuture} containing the root node of the response tree.
+   * @see #query(Expr)
+   */
+  public CompletableFuture<Value> query(Expr expr, Duration timeout) {
+    return performRequest(json.valueToTree(expr), timeout, this::handleResponse);
+  }
+
+  /**
+   * Issues a Query to FaunaDB, returning its result together with the cost FaunaDB reported for it: the
+   * compute, read and write operations used, the time spent running it, and more. See {@link QueryStats}.
+   *
+   * @param expr the query to be executed.
+   * @return a {@link CompletableFuture} containing the root node of the response tree and the query cost.
+   * @see #query(Expr)
+   */
+  public CompletableFuture<QueryResponse> queryWithStats(Expr expr) {
+    return performRequest(json.valueToTree(expr), null, this::handleResponseWithStats);
+  }
+
+  /**
+   * Issues a Query to FaunaDB, which must complete within the given time, returning its result together
+   * with the cost FaunaDB reported for it. See {@link #query(Expr, Duration)} for how the time limit applies.
+   *
+   * @param expr the query to be executed.
+   * @param timeout the time allowed for the query.
+   * @return a {@link CompletableFuture} containing the root node of the response tree and the query cost.
+   * @see #queryWithStats(Expr)
+   */
+  public CompletableFuture<QueryResponse> queryWithStats(Expr expr, Duration timeout) {
+    return performRequest(json.valueToTree(expr), timeout, this::handleResponseWithStats);
   }
 
   /**
@@ -199,7 +474,21 @@ public class FaunaClient implements AutoCloseable {
    * @return a {@link CompletableFuture} containing an ordered list of the query's responses.
    */
   public CompletableFuture<List<Value>> query(List<? extends Expr> exprs) {
-      return performRequest(json.valueToTree(exprs)).thenApply(result -> result.collect(Field.as(VALUE)));
+      return performRequest(json.valueToTree(exprs), null,
+        response -> handleResponse(response).collect(Field.as(VALUE)));
+  }
+
+  /**
+   * Issues multiple queries to FaunaDB in a single request, which must complete within the given time.
+   * See {@link #query(Expr, Duration)} for how the time limit applies.
+   *
+   * @param exprs the list of queries to be sent to FaunaDB.
+   * @param timeout the time allowed for the queries.
+   * @return a {@link CompletableFuture} containing an ordered list of the query's responses.
+   */
+  public CompletableFuture<List<Value>> query(List<? extends Expr> exprs, Duration timeout) {
+      return performRequest(json.valueToTree(exprs), timeout,
+        response -> handleResponse(response).collect(Field.as(VALUE)));
   }
 
   /**
@@ -222,7 +511,7 @@ public class FaunaClient implements AutoCloseable {
     return connection.getLastTxnTime();
   }
 
-  private Value handleResponse(FullHttpResponse response) {
+  private Value handleResponse(HttpJsonResponse response) {
     try {
       handleQueryErrors(response);
       JsonNode responseBody = parseResponseBody(response);
@@ -230,22 +519,34 @@ public class FaunaClient implements AutoCloseable {
       return json.treeToValue(resource, Value.class);
     } catch (IOException ex) {
       throw new AssertionError(ex);
-    } finally {
-      response.release();
     }
   }
 
-  private CompletableFuture<Value> performRequest(JsonNode body) {
+  private QueryResponse handleResponseWithStats(HttpJsonResponse response) {
+    return new QueryResponse(handleResponse(response), QueryStats.of(response.headers()));
+  }
+
+  private <R> CompletableFuture<R> performRequest(JsonNode body, Duration timeout,
+                                                  Function<HttpJsonResponse, R> handle) {
     try {
-        return handleNetworkExceptions(connection.post("", body).thenApply(this::handleResponse));
+        CompletableFuture<HttpJsonResponse> response = timeout == null
+          ? connection.postJson("", body)
+          : connection.postJson("", body, timeout);
+
+        CompletableFuture<R> rv = handleNetworkExceptions(response.thenApply(handle));
+        rv.whenComplete((v, ex) -> {
+          if (rv.isCancelled()) response.cancel(false);
+        });
+
+        return rv;
     } catch (IOException ex) {
-        CompletableFuture<Value> oops = new CompletableFuture<>();
+        CompletableFuture<R> oops = new CompletableFuture<>();
         oops.completeExceptionally(ex);
         return oops;
     }
   }
 
-  private void handleQueryErrors(FullHttpResponse response) {
+  private void handleQueryErrors(HttpJsonResponse response) {
     int status = response.status().code();
     if (status >= 300) {
       try {
@@ -290,17 +591,34 @@ public class FaunaClient implements AutoCloseable {
     }
   }
 
+  /**
+   * Fails the returned future with the cause of a failure rather than the {@link CompletionException}
+   * wrapping it, reporting connection failures as an {@link UnavailableException}. Deadlines running out
+   * fail with their {@link TimeoutException}, like the Scala driver does.
+   */
   private <V> CompletableFuture<V> handleNetworkExceptions(CompletableFuture<V> f) {
-      return f.whenComplete((v, ex) -> {
-              if (ex instanceof ConnectException ||
-                         ex instanceof TimeoutException) {
-                  throw new UnavailableException(ex.getMessage(), ex);
-              }
-          });
+      CompletableFuture<V> rv = new CompletableFuture<>();
+
+      f.whenComplete((v, ex) -> {
+          if (ex == null) {
+              rv.complete(v);
+              return;
+          }
+
+          Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+
+          if (cause instanceof ConnectException) {
+              rv.completeExceptionally(new UnavailableException(cause.getMessage(), cause));
+          } else {
+              rv.completeExceptionally(cause);
+          }
+      });
+
+      return rv;
   }
 
-  private JsonNode parseResponseBody(FullHttpResponse response) throws IOException {
-    JsonNode body = json.readTree(new ByteBufInputStream(response.content()));
+  private JsonNode parseResponseBody(HttpJsonResponse response) throws IOException {
+    JsonNode body = response.body();
     if (body == null) {
       throw new IOException("Invalid JSON.");
     } else {
@@ -0,0 +1,40 @@
+package com.faunadb.client;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.common.QueryStats;
+
+/**
+ * The result of a query together with the cost FaunaDB reported for it.
+ *
+ * @see FaunaClient#queryWithStats(com.faunadb.client.query.Expr)
+ */
+public final class QueryResponse {
+
+  private final Value value;
+  private final QueryStats stats;
+
+  QueryResponse(Value value, QueryStats stats) {
+    this.value = value;
+    this.stats = stats;
+  }
+
+  /**
+   * @return the root node of the response tree
+   */
+  public Value value() {
+    return value;
+  }
+
+  /**
+   * @return the cost of the query
+   */
+  public QueryStats stats() {
+    return stats;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryResponse(" + value + ", " + stats + ")";
+  }
+
+}
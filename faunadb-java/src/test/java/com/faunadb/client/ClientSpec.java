@@ -12,11 +12,13 @@ import io.netty.util.ResourceLeakDetector;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import java.util.Calendar;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -235,6 +237,12 @@ public class ClientSpec {
     query(Get(Ref(Collection("spells"), "1234"))).get();
   }
 
+  @Test
+  public void shouldFailWithATimeoutWhenTheDeadlineExpires() throws Exception {
+    thrown.expectCause(isA(TimeoutException.class));
+    serverClient.query(Get(magicMissile), Duration.ofNanos(1)).get();
+  }
+
   @Test
   public void shouldAbort() throws Exception {
     thrown.expectCause(isA(BadRequestException.class));
@@ -310,6 +318,33 @@ public class ClientSpec {
     assertThat(instance.get(NAME_FIELD), equalTo("Magic Missile"));
   }
 
+  @Test
+  public void shouldReturnQueryStats() throws Exception {
+    QueryResponse response = serverClient.queryWithStats(Get(magicMissile)).get();
+    assertThat(response.value().get(NAME_FIELD), equalTo("Magic Missile"));
+    assertThat(response.stats().byteReadOps() > 0, is(true));
+    assertThat(response.stats().byteWriteOps(), equalTo(0L));
+  }
+
+  @Test
+  public void shouldReuseCachedSessionClients() throws Exception {
+    FaunaClient session = rootClient.cachedSessionClient(ROOT_TOKEN);
+    assertThat(rootClient.cachedSessionClient(ROOT_TOKEN), sameInstance(session));
+    assertThat(session.query(Value("echo")).get().to(STRING).get(), equalTo("echo"));
+
+    rootClient.invalidateSessionClient(ROOT_TOKEN);
+    assertThat(rootClient.cachedSessionClient(ROOT_TOKEN), not(sameInstance(session)));
+  }
+
+  @Test
+  public void shouldKeepCachedSessionClientsUsableOnceClosed() throws Exception {
+    FaunaClient session = rootClient.cachedSessionClient(ROOT_TOKEN);
+    session.close();
+
+    assertThat(rootClient.cachedSessionClient(ROOT_TOKEN), sameInstance(session));
+    assertThat(session.query(Value("echo")).get().to(STRING).get(), equalTo("echo"));
+  }
+
   @Test
   public void shouldBeAbleToIssueABatchedQuery() throws Exception {
     List<Value> results = query(Arrays.asList(
@@ -1,29 +1,33 @@
 package faunadb
 
 import com.codahale.metrics.MetricRegistry
-import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.{ JsonNode, ObjectMapper }
 import com.fasterxml.jackson.databind.node.ArrayNode
 import com.fasterxml.jackson.module.scala.DefaultScalaModule
-import com.faunadb.common.Connection
+import com.faunadb.common.{ CircuitBreakerPolicy, ConcurrencyLimitPolicy, Connection, HedgePolicy, QueryStats, RequestListener, RequestLogPolicy, RetryPolicy, SessionCache, SessionCachePolicy }
 import com.faunadb.common.Connection.JvmDriver
+import com.faunadb.common.http.HttpJsonResponse
 import faunadb.errors._
 import faunadb.query.Expr
 import faunadb.values.{ ArrayV, NullV, Value }
+import io.netty.channel.EventLoopGroup
 import java.io.IOException
-import java.net.ConnectException
-import java.util.concurrent.TimeoutException
-
-import io.netty.buffer.ByteBufInputStream
-import io.netty.handler.codec.http.FullHttpResponse
+import java.net.{ ConnectException, URL }
+import java.time.{ Duration => JDuration }
+import java.util.concurrent.{ Executor, TimeoutException }
 
 import scala.collection.JavaConverters._
 import scala.compat.java8.FutureConverters._
+import scala.concurrent.duration.Deadline
 import scala.concurrent.{ ExecutionContext, Future }
 import scala.util.control.NonFatal
 
 /** Companion object to the FaunaClient class. */
 object FaunaClient {
 
+  private val json = new ObjectMapper
+  json.registerModule(new DefaultScalaModule)
+
   /**
     * Creates a new FaunaDB client.
     *
@@ -31,21 +35,69 @@ object FaunaClient {
     *
     * @param secret The secret material of the auth key used. See [[https://fauna.com/documentation#authentication-key_access]]
     * @param endpoint URL of the FaunaDB service to connect to. Defaults to https://db.fauna.com
+    * @param endpoints URLs of several FaunaDB endpoints to balance queries over, instead of a single endpoint.
     * @param metrics An optional [[com.codahale.metrics.MetricRegistry]] to record stats.
+    * @param metricsPrefix The prefix of the metric names, listed by `Connection.Builder.withMetrics`.
+    *                      Defaults to `fauna`.
+    * @param eventLoopGroup An optional [[io.netty.channel.EventLoopGroup]] performing the client I/O, shared
+    *                       with other clients, such as [[com.faunadb.common.http.SharedEventLoopGroup.get]].
+    *                       It is not shut down when the client is closed.
+    * @param retryPolicy An optional [[com.faunadb.common.RetryPolicy]] to retry failed queries, such as
+    *                    [[com.faunadb.common.RetryPolicy.DEFAULT]]. Disabled by default.
+    * @param hedgePolicy An optional [[com.faunadb.common.HedgePolicy]] to hedge slow queries that do not write,
+    *                    such as [[com.faunadb.common.HedgePolicy.DEFAULT]]. Disabled by default.
+    * @param circuitBreakerPolicy An optional [[com.faunadb.common.CircuitBreakerPolicy]] of a breaker kept for each
+    *                             endpoint, such as [[com.faunadb.common.CircuitBreakerPolicy.DEFAULT]], failing
+    *                             queries with a [[com.faunadb.common.CircuitOpenException]] while it is open.
+    *                             Disabled by default.
+    * @param concurrencyLimitPolicy An optional [[com.faunadb.common.ConcurrencyLimitPolicy]] adapting a limit on
+    *                               outstanding queries, such as [[com.faunadb.common.ConcurrencyLimitPolicy.DEFAULT]].
+    *                               Queries beyond it wait in a bounded queue, or fail with a
+    *                               [[com.faunadb.common.ConcurrencyLimitException]]. Disabled by default.
+    * @param completionExecutor The executor completing the responses of the underlying connection. Defaults to
+    *                           [[com.faunadb.common.Connection.DIRECT_EXECUTOR]], completing them on the I/O
+    *                           threads: results are then handed to the implicit `ExecutionContext` of each
+    *                           query, without an extra handoff.
+    * @param requestListener An optional [[com.faunadb.common.RequestListener]] notified of the lifecycle of every
+    *                        request, for instance to bridge them to a tracing system. Disabled by default.
+    * @param requestLogPolicy Which fraction of the requests is logged, how much of their bodies, and how often
+    *                         errors are summed up per endpoint. Defaults to [[com.faunadb.common.RequestLogPolicy.DEFAULT]].
+    * @param sessionCachePolicy How many session clients returned by `cachedSessionClient` are kept, and for how long.
+    *                           Defaults to [[com.faunadb.common.SessionCachePolicy.DEFAULT]].
     * @return A configured FaunaClient instance.
     */
   def apply(
     secret: String = null,
     endpoint: String = null,
-    metrics: MetricRegistry = null): FaunaClient = {
+    metrics: MetricRegistry = null,
+    eventLoopGroup: EventLoopGroup = null,
+    endpoints: Seq[String] = Nil,
+    retryPolicy: RetryPolicy = null,
+    hedgePolicy: HedgePolicy = null,
+    circuitBreakerPolicy: CircuitBreakerPolicy = null,
+    concurrencyLimitPolicy: ConcurrencyLimitPolicy = null,
+    completionExecutor: Executor = Connection.DIRECT_EXECUTOR,
+    metricsPrefix: String = "fauna",
+    requestListener: RequestListener = null,
+    requestLogPolicy: RequestLogPolicy = RequestLogPolicy.DEFAULT,
+    sessionCachePolicy: SessionCachePolicy = SessionCachePolicy.DEFAULT): FaunaClient = {
 
     val b = Connection.builder
     if (endpoint ne null) b.withFaunaRoot(endpoint)
+    if (endpoints.nonEmpty) b.withFaunaRoots(endpoints.map(new URL(_)).asJava)
     if (secret ne null) b.withAuthToken(secret)
-    if (metrics ne null) b.withMetrics(metrics)
+    if (metrics ne null) b.withMetrics(metrics, metricsPrefix)
+    if (eventLoopGroup ne null) b.withEventLoopGroup(eventLoopGroup)
+    if (retryPolicy ne null) b.withRetryPolicy(retryPolicy)
+    if (hedgePolicy ne null) b.withHedgePolicy(hedgePolicy)
+    b.withCircuitBreakerPolicy(circuitBreakerPolicy)
+    b.withConcurrencyLimitPolicy(concurrencyLimitPolicy)
+    b.withCompletionExecutor(completionExecutor)
+    b.withRequestListener(requestListener)
+    b.withRequestLogPolicy(requestLogPolicy)
     b.withJvmDriver(JvmDriver.SCALA)
 
-    new FaunaClient(b.build)
+    new FaunaClient(b.build, sessionCachePolicy, null, false)
   }
 }
 
@@ -80,10 +132,15 @@ object FaunaClient {
   *
   * @constructor create a new client with a configured [[com.faunadb.common.Connection]].
   */
-class FaunaClient private (connection: Connection) {
+class FaunaClient private (connection: Connection, sessionCachePolicy: SessionCachePolicy, parent: FaunaClient,
+                           cached: Boolean) {
 
-  private[this] val json = new ObjectMapper
-  json.registerModule(new DefaultScalaModule)
+  import FaunaClient.json
+
+  private val sessions: SessionCache[FaunaClient] =
+    if (parent ne null) parent.sessions
+    else new SessionCache[FaunaClient](sessionCachePolicy,
+      secret => new FaunaClient(connection.newSessionConnection(secret), null, this, true), _.release())
 
   /**
     * Issues a query.
@@ -96,15 +153,43 @@ class FaunaClient private (connection: Connection) {
     *         future is returned.
     */
   def query(expr: Expr)(implicit ec: ExecutionContext): Future[Value] =
-    connection.post("", json.valueToTree(expr)).toScala.map { resp =>
-      try {
-        handleQueryErrors(resp)
-        val rv = json.treeToValue[Value](parseResponseBody(resp).get("resource"), classOf[Value])
-        if (rv eq null) NullV else rv
-      } finally {
-        resp.release()
-      }
-    }.recover(handleNetworkExceptions)
+    querySingle(post(json.valueToTree(expr), None))
+
+  /**
+    * Issues a query which must complete before the given deadline.
+    *
+    * The time left is sent to FaunaDB as the query timeout, and the request is abandoned once the
+    * deadline is reached: the returned future then fails with a [[java.util.concurrent.TimeoutException]].
+    *
+    * @param expr the query to run, created using the query dsl helpers in [[faunadb.query]].
+    * @param deadline the deadline of the query.
+    * @return A [[scala.concurrent.Future]] containing the query result.
+    */
+  def query(expr: Expr, deadline: Deadline)(implicit ec: ExecutionContext): Future[Value] =
+    querySingle(post(json.valueToTree(expr), Some(deadline)))
+
+  /**
+    * Issues a query, returning its result together with the cost FaunaDB reported for it: the compute,
+    * read and write operations used, the time spent running it, and more.
+    *
+    * @param expr the query to run, created using the query dsl helpers in [[faunadb.query]].
+    * @return A [[scala.concurrent.Future]] containing the query result and its
+    *         [[com.faunadb.common.QueryStats]].
+    */
+  def queryWithStats(expr: Expr)(implicit ec: ExecutionContext): Future[(Value, QueryStats)] =
+    querySingleWithStats(post(json.valueToTree(expr), None))
+
+  /**
+    * Issues a query which must complete before the given deadline, returning its result together with
+    * the cost FaunaDB reported for it. The deadline applies as for a query issued with a deadline.
+    *
+    * @param expr the query to run, created using the query dsl helpers in [[faunadb.query]].
+    * @param deadline the deadline of the query.
+    * @return A [[scala.concurrent.Future]] containing the query result and its
+    *         [[com.faunadb.common.QueryStats]].
+    */
+  def queryWithStats(expr: Expr, deadline: Deadline)(implicit ec: ExecutionContext): Future[(Value, QueryStats)] =
+    querySingleWithStats(post(json.valueToTree(expr), Some(deadline)))
 
   /**
     * Issues multiple queries as a single transaction.
@@ -117,14 +202,44 @@ class FaunaClient private (connection: Connection) {
     *         query fails, a failed future is returned.
     */
   def query(exprs: Iterable[Expr])(implicit ec: ExecutionContext): Future[IndexedSeq[Value]] =
-    connection.post("", json.valueToTree(exprs)).toScala.map { resp =>
-      try {
-        handleQueryErrors(resp)
-        val arr = json.treeToValue[Value](parseResponseBody(resp).get("resource"), classOf[Value])
-        arr.asInstanceOf[ArrayV].elems
-      } finally {
-        resp.release()
-      }
+    queryMany(post(json.valueToTree(exprs), None))
+
+  /**
+    * Issues multiple queries as a single transaction, which must complete before the given deadline.
+    * The deadline applies as for a single query issued with a deadline.
+    *
+    * @param exprs the queries to run.
+    * @param deadline the deadline of the transaction.
+    * @return A [[scala.concurrent.Future]] containing an IndexedSeq of the results of each query.
+    */
+  def query(exprs: Iterable[Expr], deadline: Deadline)(implicit ec: ExecutionContext): Future[IndexedSeq[Value]] =
+    queryMany(post(json.valueToTree(exprs), Some(deadline)))
+
+  private def post(body: JsonNode, deadline: Option[Deadline]): Future[HttpJsonResponse] =
+    deadline match {
+      case Some(d) => connection.postJson("", body, JDuration.ofNanos(d.timeLeft.toNanos)).toScala
+      case None    => connection.postJson("", body).toScala
+    }
+
+  private def querySingle(response: Future[HttpJsonResponse])(implicit ec: ExecutionContext): Future[Value] =
+    response.map(parseSingle).recover(handleNetworkExceptions)
+
+  private def querySingleWithStats(response: Future[HttpJsonResponse])(implicit ec: ExecutionContext): Future[(Value, QueryStats)] =
+    response.map { resp =>
+      (parseSingle(resp), QueryStats.of(resp.headers))
+    }.recover(handleNetworkExceptions)
+
+  private def parseSingle(resp: HttpJsonResponse): Value = {
+    handleQueryErrors(resp)
+    val rv = json.treeToValue[Value](parseResponseBody(resp).get("resource"), classOf[Value])
+    if (rv eq null) NullV else rv
+  }
+
+  private def queryMany(response: Future[HttpJsonResponse])(implicit ec: ExecutionContext): Future[IndexedSeq[Value]] =
+    response.map { resp =>
+      handleQueryErrors(resp)
+      val arr = json.treeToValue[Value](parseResponseBody(resp).get("resource"), classOf[Value])
+      arr.asInstanceOf[ArrayV].elems
     }.recover(handleNetworkExceptions)
 
   /**
@@ -148,10 +263,40 @@ class FaunaClient private (connection: Connection) {
     * @param secret user secret for the session client
     * @return a new session client
     */
-  def sessionClient(secret: String): FaunaClient = new FaunaClient(connection.newSessionConnection(secret))
+  def sessionClient(secret: String): FaunaClient = new FaunaClient(connection.newSessionConnection(secret), null, this, false)
 
-  /** Frees any resources held by the client and close the underlying connection. */
-  def close(): Unit = connection.close()
+  /**
+    * Returns the session client of a secret, kept for later calls with the same secret. Unlike `sessionClient`,
+    * switching between the secrets of many tenants costs a lookup once their sessions are open. Session clients
+    * are kept according to the [[com.faunadb.common.SessionCachePolicy]] of the client, shared with its session
+    * clients, and closed along with it.
+    *
+    * Closing the returned session client has no effect: it stays usable, and is only closed once invalidated,
+    * evicted, or along with this client.
+    *
+    * @param secret user secret for the session client
+    * @return a session client authenticated with the secret
+    */
+  def cachedSessionClient(secret: String): FaunaClient = sessions.get(secret)
+
+  /**
+    * Closes the session client kept for a secret, for instance once the secret has been revoked.
+    *
+    * @param secret user secret of the session client
+    */
+  def invalidateSessionClient(secret: String): Unit = sessions.invalidate(secret)
+
+  /**
+    * Frees any resources held by the client and close the underlying connection. Does nothing for a session
+    * client returned by `cachedSessionClient`, which its cache closes instead.
+    */
+  def close(): Unit =
+    if (!cached) release()
+
+  private def release(): Unit = {
+    if (parent eq null) sessions.close()
+    connection.close()
+  }
 
   /**
    * Get the freshest timestamp reported to this client.
@@ -176,7 +321,7 @@ class FaunaClient private (connection: Connection) {
       throw new TimeoutException(ex.getMessage)
   }
 
-  private def handleQueryErrors(response: FullHttpResponse) =
+  private def handleQueryErrors(response: HttpJsonResponse) =
     response.status().code() match {
       case x if x >= 300 =>
         try {
@@ -209,8 +354,8 @@ class FaunaClient private (connection: Connection) {
       case _ =>
     }
 
-  private def parseResponseBody(response: FullHttpResponse) = {
-    val body = json.readTree(new ByteBufInputStream(response.content()))
+  private def parseResponseBody(response: HttpJsonResponse) = {
+    val body = response.body
     if (body eq null) {
       throw new IOException("Invalid JSON.")
     } else {
@@ -178,6 +178,15 @@ class ClientSpec extends FlatSpec with Matchers with BeforeAndAfterAll {
     results(1)("data", "queryTest1").to[String].get shouldBe randomText2
   }
 
+  it should "return query stats" in {
+    val collectionRef = Collection("spells")
+    val (created, stats) = await(client.queryWithStats(Create(collectionRef, Obj("data" -> Obj("name" -> "stats")))))
+
+    created("data", "name").to[String].get shouldBe "stats"
+    stats.byteWriteOps should be > 0L
+    stats.computeOps should be > 0L
+  }
+
   it should "get at timestamp" in {
     val randomCollectionName = aRandomString
     val randomCollection = await(client.query(CreateCollection(Obj("name" -> randomCollectionName))))
@@ -958,6 +967,23 @@ class ClientSpec extends FlatSpec with Matchers with BeforeAndAfterAll {
       otherClient.close()
   }
 
+  it should "reuse cached session clients" in {
+    val session = client.cachedSessionClient(config("root_token"))
+    client.cachedSessionClient(config("root_token")) should be theSameInstanceAs session
+    await(session.query("echo string")).to[String].get shouldBe "echo string"
+
+    client.invalidateSessionClient(config("root_token"))
+    client.cachedSessionClient(config("root_token")) should not be theSameInstanceAs(session)
+  }
+
+  it should "keep cached session clients usable once closed" in {
+    val session = client.cachedSessionClient(config("root_token"))
+    session.close()
+
+    client.cachedSessionClient(config("root_token")) should be theSameInstanceAs session
+    await(session.query("echo string")).to[String].get shouldBe "echo string"
+  }
+
   it should "should not create session clients on a closed client" in {
     val newClient = FaunaClient(endpoint = config("root_url"), secret = config("root_token"))
 